@@ -0,0 +1,31 @@
+@echo off
+REM Compiles the backend together with bench\ into out\ and runs one benchmark, e.g.
+REM   bench.bat LoadTest --users=2000 --concurrency=64 --report=loadtest.json
+REM   bench.bat BookingBench 5000 500 4 32 queue
+REM   bench.bat JsonBench
+REM   bench.bat PasswordBench 200 120000 8
+
+cd /d "%~dp0"
+if "%~1"=="" (
+    echo Usage: bench.bat LoadTest^|BookingBench^|JsonBench^|PasswordBench [arguments]
+    exit /b 1
+)
+
+REM Split off the benchmark name without letting CMD break --name=value arguments apart.
+for /f "tokens=1,*" %%a in ("%*") do (
+    set NAME=%%a
+    set ARGS=%%b
+)
+
+if not exist out mkdir out
+echo Compiling Java files...
+REM *Benchmark.java are JMH benchmarks; they need the Maven build (see pom.xml).
+(for %%f in (bench\com\hostel\*.java) do @echo %%f) | findstr /v /e "Benchmark.java" > out\bench-files.txt
+javac -d out -cp "lib\*" src\com\hostel\*.java @out\bench-files.txt
+
+if errorlevel 1 (
+    echo Compilation failed!
+    exit /b 1
+)
+
+java -cp "out;lib\*" com.hostel.%NAME% %ARGS%
@@ -0,0 +1,29 @@
+# PowerShell script to compile the backend with the benchmarks and run one of them, e.g.
+#   .\bench.ps1 LoadTest --users=2000 --concurrency=64 --report=loadtest.json
+#   .\bench.ps1 BookingBench 5000 500 4 32 queue
+#   .\bench.ps1 JsonBench
+#   .\bench.ps1 PasswordBench 200 120000 8
+
+param(
+    [Parameter(Mandatory = $true)][ValidateSet("LoadTest", "BookingBench", "JsonBench", "PasswordBench")][string]$Name,
+    [Parameter(ValueFromRemainingArguments = $true)][string[]]$Rest
+)
+
+$scriptDir = Split-Path -Parent $MyInvocation.MyCommand.Path
+Push-Location $scriptDir
+
+New-Item -ItemType Directory -Force -Path out | Out-Null
+Write-Host "Compiling Java files..." -ForegroundColor Yellow
+# *Benchmark.java are JMH benchmarks; they need the Maven build (see pom.xml).
+$javaFiles = @(Get-ChildItem -Path "src\com\hostel\*.java") + @(Get-ChildItem -Path "bench\com\hostel\*.java" | Where-Object { $_.Name -notlike "*Benchmark.java" })
+javac -d out -cp "lib\*" $javaFiles.FullName
+
+if ($LASTEXITCODE -ne 0) {
+    Write-Host "Compilation failed!" -ForegroundColor Red
+    Pop-Location
+    exit 1
+}
+
+java -cp "out;lib\*" "com.hostel.$Name" @Rest
+
+Pop-Location
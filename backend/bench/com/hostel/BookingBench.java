@@ -0,0 +1,110 @@
+package com.hostel;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.sql.*;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Contention benchmark for BookingService against a throwaway database:
+// many students race for a small number of seats, then the result is checked for overbooking.
+// Mode "direct" calls BookingService.book from every thread (each booking is its own transaction);
+// mode "queue" submits through BookingQueue, which applies them in arrival order in group commits.
+//   java -cp out:lib/* com.hostel.BookingBench [students] [rooms] [seatsPerRoom] [threads] [direct|queue] [batch]
+public class BookingBench {
+    public static void main(String[] args) throws Exception {
+        int students = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+        int rooms = args.length > 1 ? Integer.parseInt(args[1]) : 500;
+        int seats = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+        int threads = args.length > 3 ? Integer.parseInt(args[3]) : 32;
+        boolean queued = args.length > 4 && args[4].equalsIgnoreCase("queue");
+        int batch = args.length > 5 ? Integer.parseInt(args[5]) : 64;
+
+        File dir = Files.createTempDirectory("hostel-bench").toFile();
+        Database.init(new File(dir, "bench.db").getPath());
+        int firstStudent = setUp(students, rooms, seats);
+        BookingQueue queue = queued ? new BookingQueue(students * 2, batch) : null;
+        if (queue != null) queue.start();
+        // A student's second request can get the first one's ticket back; count each ticket once.
+        Set<BookingQueue.Ticket> seen = ConcurrentHashMap.newKeySet();
+
+        AtomicInteger booked = new AtomicInteger(), full = new AtomicInteger(), dup = new AtomicInteger(), busy = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        long[] latencies = new long[students * 2];
+        AtomicInteger n = new AtomicInteger();
+        for (int i = 0; i < students * 2; i++) {
+            int student = firstStudent + (i % students); // every student tries twice
+            pool.execute(() -> {
+                try {
+                    start.await();
+                    int room = 1 + ThreadLocalRandom.current().nextInt(rooms);
+                    long t0 = System.nanoTime();
+                    BookingService.Result r;
+                    if (queue == null) {
+                        r = BookingService.book(student, room);
+                    } else {
+                        BookingQueue.Ticket t = queue.submit(student, room);
+                        if (t == null) { busy.incrementAndGet(); return; }
+                        r = t.result.get();
+                        if (!seen.add(t)) { latencies[n.getAndIncrement()] = System.nanoTime() - t0; dup.incrementAndGet(); return; }
+                    }
+                    latencies[n.getAndIncrement()] = System.nanoTime() - t0;
+                    switch (r.status()) {
+                        case BOOKED: booked.incrementAndGet(); break;
+                        case ALREADY_BOOKED: dup.incrementAndGet(); break;
+                        default: full.incrementAndGet();
+                    }
+                } catch (BookingService.BusyException e) { busy.incrementAndGet(); }
+                catch (Exception e) { e.printStackTrace(); }
+            });
+        }
+        long t0 = System.nanoTime();
+        start.countDown();
+        pool.shutdown();
+        pool.awaitTermination(10, TimeUnit.MINUTES);
+        double secs = (System.nanoTime() - t0) / 1e9;
+
+        int attempts = n.get();
+        java.util.Arrays.sort(latencies, 0, attempts);
+        System.out.printf("mode=%s attempts=%d threads=%d seats=%d%n", queued ? "queue(batch=" + batch + ")" : "direct", attempts, threads, rooms * seats);
+        System.out.printf("booked=%d roomFull=%d alreadyBooked=%d busy=%d%n", booked.get(), full.get(), dup.get(), busy.get());
+        System.out.printf("throughput=%.0f attempts/s  p50=%.2fms p99=%.2fms p999=%.2fms max=%.2fms%n", attempts / secs,
+                latencies[attempts / 2] / 1e6, latencies[(int) (attempts * 0.99)] / 1e6, latencies[(int) (attempts * 0.999)] / 1e6, latencies[attempts - 1] / 1e6);
+        System.out.println("busy retries: " + BookingService.stats());
+        if (queue != null) { queue.stop(); System.out.println("queue: " + queue.stats()); }
+        verify(rooms * seats, booked.get());
+        Database.close();
+    }
+
+    private static int setUp(int students, int rooms, int seats) throws SQLException {
+        try (Connection c = Database.getConnection()) {
+            c.setAutoCommit(false);
+            try (Statement st = c.createStatement()) { st.executeUpdate("DELETE FROM rooms"); }
+            try (PreparedStatement ps = c.prepareStatement("INSERT INTO rooms(id,room_number,capacity,available) VALUES(?,?,?,?)")) {
+                for (int i = 1; i <= rooms; i++) { ps.setInt(1, i); ps.setString(2, "R" + i); ps.setInt(3, seats); ps.setInt(4, seats); ps.addBatch(); }
+                ps.executeBatch();
+            }
+            int first;
+            try (Statement st = c.createStatement(); ResultSet rs = st.executeQuery("SELECT COALESCE(MAX(id),0)+1 FROM students")) { rs.next(); first = rs.getInt(1); }
+            try (PreparedStatement ps = c.prepareStatement("INSERT INTO students(name,email,password,role) VALUES(?,?,?,'student')")) {
+                for (int i = 0; i < students; i++) { ps.setString(1, "S" + i); ps.setString(2, "s" + i + "@bench"); ps.setString(3, "x"); ps.addBatch(); }
+                ps.executeBatch();
+            }
+            c.commit();
+            c.setAutoCommit(true);
+            return first;
+        }
+    }
+
+    private static void verify(int seats, int booked) throws SQLException {
+        try (Connection c = Database.getReadConnection(); Statement st = c.createStatement()) {
+            ResultSet rs = st.executeQuery("SELECT (SELECT SUM(available) FROM rooms), (SELECT COUNT(*) FROM bookings WHERE status='active'), (SELECT MIN(available) FROM rooms)");
+            rs.next();
+            int available = rs.getInt(1), active = rs.getInt(2), min = rs.getInt(3);
+            boolean ok = min >= 0 && active == booked && available + active == seats;
+            System.out.printf("check: available=%d active=%d minAvailable=%d -> %s%n", available, active, min, ok ? "OK" : "INCONSISTENT");
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.hostel;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.*;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+// BookingService against a throwaway database set up once per trial: 500 rooms of 4 seats and a
+// student for every benchmark thread. Each thread books its own student into a room and cancels
+// again, so the tables stay the same size however long it runs. BookingBench is the contention
+// test with many students racing for few seats; this measures the cost of one transaction.
+//   mvn test-compile exec:exec -Dbench.args="BookingBenchmark"
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BookingBenchmark {
+    static final int ROOMS = 500, SEATS = 4, STUDENTS = 256;
+
+    Path dir;
+    int firstStudent;
+    final AtomicInteger nextStudent = new AtomicInteger();
+
+    @State(Scope.Thread)
+    public static class Student {
+        int id, room;
+
+        @Setup(Level.Trial)
+        public void pick(BookingBenchmark b) {
+            int n = b.nextStudent.getAndIncrement();
+            if (n >= STUDENTS) throw new IllegalStateException("More than " + STUDENTS + " benchmark threads");
+            id = b.firstStudent + n;
+            room = 1 + n % ROOMS;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        dir = Files.createTempDirectory("hostel-bench");
+        Database.init(dir.resolve("bench.db").toString(), 2);
+        try (Connection c = Database.getConnection()) {
+            c.setAutoCommit(false);
+            try (Statement st = c.createStatement()) { st.executeUpdate("DELETE FROM rooms"); }
+            try (PreparedStatement ps = c.prepareStatement("INSERT INTO rooms(id,room_number,capacity,available) VALUES(?,?,?,?)")) {
+                for (int i = 1; i <= ROOMS; i++) { ps.setInt(1, i); ps.setString(2, "R" + i); ps.setInt(3, SEATS); ps.setInt(4, SEATS); ps.addBatch(); }
+                ps.executeBatch();
+            }
+            try (Statement st = c.createStatement(); ResultSet rs = st.executeQuery("SELECT COALESCE(MAX(id),0)+1 FROM students")) { rs.next(); firstStudent = rs.getInt(1); }
+            try (PreparedStatement ps = c.prepareStatement("INSERT INTO students(name,email,password,role) VALUES(?,?,'x','student')")) {
+                for (int i = 0; i < STUDENTS; i++) { ps.setString(1, "S" + i); ps.setString(2, "s" + i + "@bench"); ps.addBatch(); }
+                ps.executeBatch();
+            }
+            c.commit();
+            c.setAutoCommit(true);
+        }
+        RoomCache.load();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Database.close();
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path p : files.sorted(Comparator.reverseOrder()).toList()) Files.delete(p);
+        }
+    }
+
+    // Two transactions, as POST /api/book and a cancellation make them.
+    @Benchmark
+    public Object bookThenCancel(Student s) throws SQLException {
+        BookingService.book(s.id, s.room);
+        return BookingService.cancel(s.id);
+    }
+
+    // Both in one transaction, as BookingQueue applies a batch.
+    @Benchmark
+    public Object bookThenCancelInOneTransaction(Student s) throws SQLException {
+        return BookingService.inTransaction(c -> {
+            BookingService.book(c, s.id, s.room);
+            return BookingService.cancel(c, s.id);
+        });
+    }
+
+    // Four threads taking turns on the single writer connection.
+    @Benchmark
+    @Threads(4)
+    public Object bookThenCancelFourThreads(Student s) throws SQLException {
+        BookingService.book(s.id, s.room);
+        return BookingService.cancel(s.id);
+    }
+}
@@ -0,0 +1,153 @@
+package com.hostel;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+// Microbenchmark: the streaming Json.Writer/byte parser against the previous
+// StringBuilder + String.replace implementation (kept below as Legacy), on a room-list
+// and a booking-list payload. Reports ns/op and bytes allocated per op.
+//   java -cp out com.hostel.JsonBench [rooms] [bookings] [iterations]
+public class JsonBench {
+    interface Op { void run() throws Exception; }
+
+    static volatile Object sink;
+
+    public static void main(String[] args) throws Exception {
+        int rooms = args.length > 0 ? Integer.parseInt(args[0]) : 600;
+        int bookings = args.length > 1 ? Integer.parseInt(args[1]) : 5000;
+        int iterations = args.length > 2 ? Integer.parseInt(args[2]) : 500;
+
+        Map<String, Object> roomList = Collections.singletonMap("rooms", rooms(rooms));
+        Map<String, Object> bookingList = Collections.singletonMap("bookings", bookings(bookings));
+        OutputStream devNull = OutputStream.nullOutputStream();
+
+        for (Object[] payload : new Object[][]{{"rooms", roomList}, {"bookings", bookingList}}) {
+            String name = (String) payload[0];
+            @SuppressWarnings("unchecked") Map<String, Object> body = (Map<String, Object>) payload[1];
+            byte[] bytes = Json.toBytes(body);
+            String text = new String(bytes, StandardCharsets.UTF_8);
+            System.out.printf("%n== %s (%d bytes)%n", name, bytes.length);
+            run("legacy stringify+getBytes", iterations, () -> devNull.write(Legacy.stringify(body).getBytes(StandardCharsets.UTF_8)));
+            run("streaming writer", iterations, () -> { try (Json.Writer w = new Json.Writer(new NonClosing(devNull))) { w.value(body); } });
+            run("legacy parse(String)", iterations, () -> sink = Legacy.parse(text));
+            run("byte parse(byte[])", iterations, () -> sink = Json.parse(bytes));
+        }
+    }
+
+    static void run(String label, int iterations, Op op) throws Exception {
+        for (int i = 0; i < iterations; i++) op.run(); // warm-up
+        com.sun.management.ThreadMXBean mx = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long tid = Thread.currentThread().getId();
+        long a0 = mx.getThreadAllocatedBytes(tid);
+        long t0 = System.nanoTime();
+        for (int i = 0; i < iterations; i++) op.run();
+        long ns = (System.nanoTime() - t0) / iterations;
+        long alloc = (mx.getThreadAllocatedBytes(tid) - a0) / iterations;
+        System.out.printf("  %-28s %10d ns/op %12d B/op%n", label, ns, alloc);
+    }
+
+    static List<Map<String, Object>> rooms(int n) {
+        List<Map<String, Object>> list = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("id", i + 1); m.put("roomNumber", "B" + (100 + i)); m.put("capacity", 3); m.put("available", i % 4);
+            list.add(m);
+        }
+        return list;
+    }
+
+    static List<Map<String, Object>> bookings(int n) {
+        List<Map<String, Object>> list = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("id", n - i); m.put("status", i % 5 == 0 ? "cancelled" : "active");
+            m.put("createdAt", "2024-07-01T09:00:" + (10 + i % 50) + ".123456");
+            m.put("studentName", "Student \"" + i + "\" M\u00fcller"); m.put("studentEmail", "s" + i + "@student.com");
+            m.put("roomNumber", "A" + (100 + i % 600));
+            list.add(m);
+        }
+        return list;
+    }
+
+    static final class NonClosing extends OutputStream {
+        private final OutputStream out;
+        NonClosing(OutputStream out) { this.out = out; }
+        @Override public void write(int b) throws IOException { out.write(b); }
+        @Override public void write(byte[] b, int off, int len) throws IOException { out.write(b, off, len); }
+    }
+
+    // The implementation Json replaced, for comparison.
+    static final class Legacy {
+        static Map<String, Object> parse(String json) { return new Parser(json).parseObject(); }
+
+        static String stringify(Object value) { StringBuilder sb = new StringBuilder(); writeValue(sb, value); return sb.toString(); }
+
+        private static void writeValue(StringBuilder sb, Object v) {
+            if (v == null) sb.append("null");
+            else if (v instanceof String) sb.append('"').append(escape((String) v)).append('"');
+            else if (v instanceof Number || v instanceof Boolean) sb.append(String.valueOf(v));
+            else if (v instanceof Map) {
+                sb.append('{'); boolean first = true;
+                for (Map.Entry<?, ?> me : ((Map<?, ?>) v).entrySet()) {
+                    if (!first) sb.append(','); first = false;
+                    sb.append('"').append(escape(String.valueOf(me.getKey()))).append('"').append(':');
+                    writeValue(sb, me.getValue());
+                }
+                sb.append('}');
+            } else if (v instanceof Iterable) {
+                sb.append('['); boolean first = true;
+                for (Object it : (Iterable<?>) v) { if (!first) sb.append(','); first = false; writeValue(sb, it); }
+                sb.append(']');
+            } else sb.append('"').append(escape(String.valueOf(v))).append('"');
+        }
+
+        private static String escape(String s) { return s.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n"); }
+
+        private static class Parser {
+            private final String s; int i = 0;
+            Parser(String s) { this.s = s.trim(); }
+            Map<String, Object> parseObject() {
+                skipWs(); expect('{'); Map<String, Object> m = new LinkedHashMap<>(); skipWs();
+                if (peek() == '}') { i++; return m; }
+                while (true) {
+                    skipWs(); String key = parseString(); skipWs(); expect(':'); skipWs(); Object val = parseValue(); m.put(key, val); skipWs();
+                    char c = peek(); if (c == ',') { i++; continue; } if (c == '}') { i++; break; } throw new RuntimeException("Expected , or }");
+                }
+                return m;
+            }
+            List<Object> parseArray() {
+                skipWs(); expect('['); List<Object> a = new ArrayList<>(); skipWs();
+                if (peek() == ']') { i++; return a; }
+                while (true) {
+                    skipWs(); a.add(parseValue()); skipWs();
+                    char c = peek(); if (c == ',') { i++; continue; } if (c == ']') { i++; break; } throw new RuntimeException("Expected , or ]");
+                }
+                return a;
+            }
+            Object parseValue() {
+                skipWs(); char c = peek();
+                if (c == '"') return parseString();
+                if (c == '{') return parseObject();
+                if (c == '[') return parseArray();
+                if (s.startsWith("true", i)) { i += 4; return Boolean.TRUE; }
+                if (s.startsWith("false", i)) { i += 5; return Boolean.FALSE; }
+                if (s.startsWith("null", i)) { i += 4; return null; }
+                int start = i; while (i < s.length()) { char d = s.charAt(i); if ((d >= '0' && d <= '9') || d == '-' || d == '+' || d == '.' || d == 'e' || d == 'E') i++; else break; }
+                String num = s.substring(start, i);
+                if (num.contains(".") || num.contains("e") || num.contains("E")) return Double.parseDouble(num);
+                return Long.parseLong(num);
+            }
+            String parseString() {
+                expect('"'); StringBuilder sb = new StringBuilder();
+                while (i < s.length()) { char c = s.charAt(i++); if (c == '"') break; if (c == '\\') { char n = s.charAt(i++); if (n == 'n') sb.append('\n'); else sb.append(n); } else sb.append(c); }
+                return sb.toString();
+            }
+            void skipWs() { while (i < s.length()) { char c = s.charAt(i); if (c == ' ' || c == '\n' || c == '\r' || c == '\t') i++; else break; } }
+            void expect(char c) { if (peek() != c) throw new RuntimeException("Expected '" + c + "'"); i++; }
+            char peek() { return s.charAt(i); }
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.hostel;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// JMH version of JsonBench for the streaming writer and the byte parser, on the room list and a
+// bookings page (same payloads). Run with -prof gc for bytes allocated per op.
+//   mvn test-compile exec:exec -Dbench.args="JsonBenchmark -prof gc"
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonBenchmark {
+    @Param({"rooms", "bookings"})
+    String payload;
+
+    Map<String, Object> body;
+    byte[] bytes;
+    OutputStream out;
+
+    @Setup
+    public void setUp(Blackhole bh) {
+        body = payload.equals("rooms") ? Collections.singletonMap("rooms", JsonBench.rooms(600)) : Collections.singletonMap("bookings", JsonBench.bookings(500));
+        bytes = Json.toBytes(body);
+        out = new OutputStream() {
+            @Override public void write(int b) { bh.consume(b); }
+            @Override public void write(byte[] b, int off, int len) { bh.consume(len); }
+        };
+    }
+
+    @Benchmark
+    public void write() throws IOException {
+        try (Json.Writer w = new Json.Writer(new JsonBench.NonClosing(out))) { w.value(body); }
+    }
+
+    @Benchmark
+    public Map<String, Object> parse() {
+        return Json.parse(bytes);
+    }
+}
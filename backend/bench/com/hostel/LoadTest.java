@@ -0,0 +1,259 @@
+package com.hostel;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.File;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// Headless load generator for the HTTP API. By default it starts the real server in-process on a
+// throwaway database; with --url it drives a running server instead. Rooms are created through the
+// bulk import, then --users students each go register -> login -> rooms -> book -> myBooking ->
+// (cancel) -> logout on --concurrency threads. Prints per-step latency and throughput, checks that
+// no imported room was overbooked, and writes the same numbers as JSON to --report.
+//   java -cp out:lib/* com.hostel.LoadTest [--users=2000] [--concurrency=64] [--rooms=200] [--seats=4]
+//       [--cancel=0.3] [--url=http://host:8080/api] [--report=loadtest.json] [server flags, e.g. --executor=virtual]
+public class LoadTest {
+    private static final String[] STEPS = {"register", "login", "rooms", "book", "myBooking", "cancel", "logout"};
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999, 1.0};
+
+    private static final class Step {
+        final Metrics.Histogram latency = new Metrics.Histogram();
+        final ConcurrentHashMap<Integer, LongAdder> codes = new ConcurrentHashMap<>();
+        final LongAdder failures = new LongAdder();
+    }
+
+    private final Map<String, Step> steps = new LinkedHashMap<>();
+    private final HttpClient http = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).connectTimeout(Duration.ofSeconds(10)).build();
+    private final String base;
+    private final String runId = Long.toString(System.currentTimeMillis(), 36);
+    private final LongAdder booked = new LongAdder();
+    private final LongAdder cancelled = new LongAdder();
+    private final LongAdder queuedPolls = new LongAdder();
+    private final ConcurrentHashMap<String, LongAdder> transportErrors = new ConcurrentHashMap<>();
+    private final ThreadLocal<String> etag = new ThreadLocal<>();
+
+    LoadTest(String base) {
+        this.base = base;
+        for (String s : STEPS) steps.put(s, new Step());
+    }
+
+    public static void main(String[] args) throws Exception {
+        int users = 2000, concurrency = 64, rooms = 200, seats = 4;
+        double cancelRate = 0.3;
+        String url = null, report = null, adminEmail = "admin@hostel.com", adminPassword = "admin123";
+        List<String> serverArgs = new ArrayList<>();
+        for (String a : args) {
+            int eq = a.indexOf('=');
+            String key = eq > 2 ? a.substring(2, eq) : a, value = eq > 2 ? a.substring(eq + 1) : "";
+            switch (key) {
+                case "users": users = Integer.parseInt(value); break;
+                case "concurrency": concurrency = Integer.parseInt(value); break;
+                case "rooms": rooms = Integer.parseInt(value); break;
+                case "seats": seats = Integer.parseInt(value); break;
+                case "cancel": cancelRate = Double.parseDouble(value); break;
+                case "url": url = value; break;
+                case "report": report = value; break;
+                case "admin-email": adminEmail = value; break;
+                case "admin-password": adminPassword = value; break;
+                default: serverArgs.add(a);
+            }
+        }
+
+        HttpServer server = null;
+        ServerConfig config = null;
+        if (url == null) {
+            config = ServerConfig.parse(serverArgs.toArray(new String[0]));
+            if (serverArgs.stream().noneMatch(a -> a.startsWith("--port="))) config.port = 0;
+            if (serverArgs.stream().noneMatch(a -> a.startsWith("--db="))) config.dbPath = new File(Files.createTempDirectory("hostel-load").toFile(), "load.db").getPath();
+            // Every virtual user comes from this one address; the per-IP login and register limits would throttle the run.
+            if (serverArgs.stream().noneMatch(a -> a.startsWith("--rate-limits="))) config.rateLimits = "off";
+            server = Main.start(config);
+            url = "http://localhost:" + server.getAddress().getPort() + "/api";
+        }
+
+        LoadTest t = new LoadTest(url);
+        String admin = t.login(adminEmail, adminPassword, "admin");
+        List<Integer> roomIds = t.importRooms(admin, rooms, seats);
+        System.out.printf("target=%s users=%d concurrency=%d rooms=%d seats=%d%s%n", url, users, concurrency, rooms, rooms * seats,
+                config != null ? " (in-process: " + config + ")" : "");
+
+        ExecutorService pool = Executors.newFixedThreadPool(concurrency);
+        AtomicInteger next = new AtomicInteger();
+        double rate = cancelRate;
+        int count = users;
+        long start = System.nanoTime();
+        for (int w = 0; w < concurrency; w++) {
+            pool.execute(() -> {
+                int i;
+                while ((i = next.getAndIncrement()) < count) t.student(i, roomIds, rate);
+            });
+        }
+        pool.shutdown();
+        pool.awaitTermination(1, TimeUnit.HOURS);
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        Map<String, Object> result = t.report(users, concurrency, seconds);
+        result.put("check", t.check(roomIds, rooms * seats));
+        if (report != null) Files.write(new File(report).toPath(), Json.toBytes(result));
+        if (server != null) Main.stop(server);
+        System.exit(0);
+    }
+
+    private void student(int i, List<Integer> roomIds, double cancelRate) {
+        String email = "lt-" + runId + "-" + i + "@load.test";
+        if (call("register", "POST", "/register", null, "{\"name\":\"Load " + i + "\",\"email\":\"" + email + "\",\"password\":\"pw\"}") == null) return;
+        HttpResponse<byte[]> login = call("login", "POST", "/login", null, "{\"email\":\"" + email + "\",\"password\":\"pw\",\"role\":\"student\"}");
+        if (login == null || login.statusCode() != 200) return;
+        String token = String.valueOf(Json.parse(login.body()).get("token"));
+
+        // Like a browser, revalidate the room list with the ETag this thread saw last.
+        long t0 = System.nanoTime();
+        HttpResponse<byte[]> rooms = send("GET", "/rooms", token, null, etag.get());
+        record(steps.get("rooms"), rooms, t0);
+        if (rooms != null) rooms.headers().firstValue("ETag").ifPresent(etag::set);
+
+        int roomId = roomIds.get(ThreadLocalRandom.current().nextInt(roomIds.size()));
+        Step step = steps.get("book");
+        t0 = System.nanoTime();
+        HttpResponse<byte[]> r = send("POST", "/book", token, "{\"roomId\":" + roomId + "}");
+        // A 202 means the booking queue has not reached this request yet; poll until it is decided.
+        while (r != null && r.statusCode() == 202) {
+            queuedPolls.increment();
+            try { Thread.sleep(50); } catch (InterruptedException e) { Thread.currentThread().interrupt(); return; }
+            r = send("GET", "/book", token, null);
+        }
+        record(step, r, t0);
+        boolean ok = r != null && r.statusCode() == 200;
+        if (ok) booked.increment();
+
+        call("myBooking", "GET", "/myBooking", token, null);
+        if (ok && ThreadLocalRandom.current().nextDouble() < cancelRate) {
+            HttpResponse<byte[]> c = call("cancel", "DELETE", "/myBooking", token, null);
+            if (c != null && c.statusCode() == 200) cancelled.increment();
+        }
+        call("logout", "POST", "/logout", token, null);
+    }
+
+    private HttpResponse<byte[]> call(String name, String method, String path, String token, String body) {
+        long t0 = System.nanoTime();
+        HttpResponse<byte[]> r = send(method, path, token, body);
+        record(steps.get(name), r, t0);
+        return r;
+    }
+
+    private void record(Step step, HttpResponse<byte[]> r, long startNanos) {
+        step.latency.record((System.nanoTime() - startNanos) / 1000);
+        if (r == null) { step.failures.increment(); return; }
+        step.codes.computeIfAbsent(r.statusCode(), k -> new LongAdder()).increment();
+    }
+
+    private HttpResponse<byte[]> send(String method, String path, String token, String body) {
+        return send(method, path, token, body, null);
+    }
+
+    // Returns null when the request failed at the transport level.
+    private HttpResponse<byte[]> send(String method, String path, String token, String body, String ifNoneMatch) {
+        HttpRequest.Builder b = HttpRequest.newBuilder(URI.create(base + path)).timeout(Duration.ofSeconds(30));
+        b.method(method, body == null ? HttpRequest.BodyPublishers.noBody() : HttpRequest.BodyPublishers.ofString(body, StandardCharsets.UTF_8));
+        if (body != null) b.header("Content-Type", "application/json");
+        if (token != null) b.header("X-Auth-Token", token);
+        if (ifNoneMatch != null) b.header("If-None-Match", ifNoneMatch);
+        try { return http.send(b.build(), HttpResponse.BodyHandlers.ofByteArray()); }
+        catch (Exception e) {
+            transportErrors.computeIfAbsent(e.getClass().getSimpleName() + ": " + e.getMessage(), k -> new LongAdder()).increment();
+            return null;
+        }
+    }
+
+    private String login(String email, String password, String role) {
+        HttpResponse<byte[]> r = send("POST", "/login", null, "{\"email\":\"" + email + "\",\"password\":\"" + password + "\",\"role\":\"" + role + "\"}");
+        if (r == null || r.statusCode() != 200) throw new IllegalStateException("Login as " + email + " failed");
+        return String.valueOf(Json.parse(r.body()).get("token"));
+    }
+
+    // Rooms named LT<run>-<n>, so the check below only looks at this run's rooms.
+    private List<Integer> importRooms(String admin, int rooms, int seats) {
+        StringBuilder csv = new StringBuilder("roomNumber,capacity\n");
+        for (int i = 0; i < rooms; i++) csv.append("LT").append(runId).append('-').append(i).append(',').append(seats).append('\n');
+        HttpRequest req = HttpRequest.newBuilder(URI.create(base + "/admin/rooms/import")).header("X-Auth-Token", admin).header("Content-Type", "text/csv")
+                .POST(HttpRequest.BodyPublishers.ofString(csv.toString())).build();
+        try {
+            HttpResponse<byte[]> r = http.send(req, HttpResponse.BodyHandlers.ofByteArray());
+            if (r.statusCode() != 200) throw new IllegalStateException("Room import failed: " + new String(r.body(), StandardCharsets.UTF_8));
+        } catch (Exception e) { throw new IllegalStateException("Room import failed", e); }
+        List<Integer> ids = new ArrayList<>();
+        for (Map<String, Object> room : ourRooms()) ids.add(((Number) room.get("id")).intValue());
+        return ids;
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Map<String, Object>> ourRooms() {
+        HttpResponse<byte[]> r = send("GET", "/rooms", null, null);
+        List<Map<String, Object>> out = new ArrayList<>();
+        for (Object o : (List<Object>) Json.parse(r.body()).get("rooms")) {
+            Map<String, Object> room = (Map<String, Object>) o;
+            if (String.valueOf(room.get("roomNumber")).startsWith("LT" + runId + "-")) out.add(room);
+        }
+        return out;
+    }
+
+    // Seats still free plus bookings that were not cancelled must add up to the seats imported.
+    private Map<String, Object> check(List<Integer> roomIds, int seats) {
+        long available = 0, min = Long.MAX_VALUE;
+        for (Map<String, Object> room : ourRooms()) {
+            long a = ((Number) room.get("available")).longValue();
+            available += a; min = Math.min(min, a);
+        }
+        long held = booked.sum() - cancelled.sum();
+        boolean ok = min >= 0 && available + held == seats;
+        System.out.printf("check: available=%d held=%d seats=%d minAvailable=%d -> %s%n", available, held, seats, min, ok ? "OK" : "INCONSISTENT");
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("available", available); m.put("held", held); m.put("seats", seats); m.put("ok", ok);
+        return m;
+    }
+
+    private Map<String, Object> report(int users, int concurrency, double seconds) {
+        long total = 0;
+        Map<String, Object> perStep = new LinkedHashMap<>();
+        System.out.printf("%n%-10s %8s %9s %9s %9s %9s %9s %9s  %s%n", "step", "count", "req/s", "p50 ms", "p90 ms", "p99 ms", "p999 ms", "max ms", "status codes");
+        for (Map.Entry<String, Step> e : steps.entrySet()) {
+            Step s = e.getValue();
+            long n = s.latency.count();
+            if (n == 0) continue;
+            total += n;
+            long[] q = s.latency.quantiles(QUANTILES);
+            Map<String, Long> codes = new TreeMap<>();
+            for (Map.Entry<Integer, LongAdder> c : s.codes.entrySet()) codes.put(String.valueOf(c.getKey()), c.getValue().sum());
+            if (s.failures.sum() > 0) codes.put("failed", s.failures.sum());
+            System.out.printf("%-10s %8d %9.0f %9.2f %9.2f %9.2f %9.2f %9.2f  %s%n", e.getKey(), n, n / seconds,
+                    q[0] / 1e3, q[1] / 1e3, q[2] / 1e3, q[3] / 1e3, q[4] / 1e3, codes);
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("count", n); m.put("perSecond", Math.round(n / seconds));
+            m.put("p50Ms", q[0] / 1e3); m.put("p90Ms", q[1] / 1e3); m.put("p99Ms", q[2] / 1e3); m.put("p999Ms", q[3] / 1e3); m.put("maxMs", q[4] / 1e3);
+            m.put("codes", codes);
+            perStep.put(e.getKey(), m);
+        }
+        System.out.printf("%ntotal=%d requests in %.2fs -> %.0f req/s; booked=%d cancelled=%d queuedPolls=%d%n",
+                total, seconds, total / seconds, booked.sum(), cancelled.sum(), queuedPolls.sum());
+        Map<String, Long> errors = new TreeMap<>();
+        for (Map.Entry<String, LongAdder> e : transportErrors.entrySet()) errors.put(e.getKey(), e.getValue().sum());
+        if (!errors.isEmpty()) System.out.println("transport errors: " + errors);
+        Map<String, Object> out = new LinkedHashMap<>();
+        out.put("target", base); out.put("users", users); out.put("concurrency", concurrency);
+        out.put("seconds", seconds); out.put("requests", total); out.put("requestsPerSecond", Math.round(total / seconds));
+        out.put("booked", booked.sum()); out.put("cancelled", cancelled.sum()); out.put("queuedPolls", queuedPolls.sum());
+        out.put("steps", perStep);
+        out.put("transportErrors", errors);
+        return out;
+    }
+}
@@ -0,0 +1,59 @@
+package com.hostel;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+// Login throughput of the password pool: verifies a burst of logins against PBKDF2 hashes with
+// 1, 2, 4 ... maxThreads hashing threads and reports logins/s overall and per core in use, then
+// the same for registrations (hash only) and for repeat logins answered by CredentialCache.
+//   java -cp out:lib/* com.hostel.PasswordBench [logins] [iterations] [maxThreads]
+public class PasswordBench {
+    public static void main(String[] args) throws Exception {
+        int logins = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 120_000;
+        int cores = Runtime.getRuntime().availableProcessors();
+        int maxThreads = args.length > 2 ? Integer.parseInt(args[2]) : cores;
+
+        Passwords.init(1, logins, iterations);
+        String stored = Passwords.hash("correct horse");
+        System.out.printf("PBKDF2-SHA256, %d iterations, %d logins per run, %d cores%n", iterations, logins, cores);
+        System.out.printf("%-8s %12s %14s %14s %14s%n", "threads", "logins/s", "logins/s/core", "registers/s", "p99 ms");
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            Passwords.shutdown();
+            Passwords.init(threads, logins, iterations);
+            long[] latencies = new long[logins];
+            double loginRate = run(logins, latencies, i -> Passwords.verify(i % 10 == 0 ? "wrong" : "correct horse", stored));
+            double registerRate = run(logins, new long[logins], i -> Passwords.hash("password" + i));
+            Arrays.sort(latencies);
+            System.out.printf("%-8d %12.1f %14.1f %14.1f %14.1f%n", threads, loginRate, loginRate / Math.min(threads, cores), registerRate,
+                    latencies[(int) Math.min(logins - 1, Math.ceil(logins * 0.99) - 1)] / 1e6);
+        }
+        Passwords.shutdown();
+
+        CredentialCache cache = new CredentialCache(60_000, 10_000);
+        for (int i = 0; i < 1000; i++) cache.put("student:s" + i + "@bench", stored, "correct horse");
+        int hits = 2_000_000, ok = 0;
+        long t0 = System.nanoTime();
+        for (int i = 0; i < hits; i++) if (cache.matches("student:s" + (i % 1000) + "@bench", stored, "correct horse")) ok++;
+        double secs = (System.nanoTime() - t0) / 1e9;
+        System.out.printf("credential cache: %.0f logins/s on one thread (%d/%d matched)%n", hits / secs, ok, hits);
+    }
+
+    private interface Work { Object run(int i); }
+
+    // Submits n tasks to the password pool at once; returns completions per second.
+    private static double run(int n, long[] latencies, Work work) {
+        List<CompletableFuture<Object>> futures = new ArrayList<>(n);
+        long t0 = System.nanoTime();
+        for (int i = 0; i < n; i++) {
+            int index = i;
+            CompletableFuture<Object> f = Passwords.submit(() -> { Object r = work.run(index); latencies[index] = System.nanoTime() - t0; return r; });
+            if (f == null) throw new IllegalStateException("password queue full; raise the queue size");
+            futures.add(f);
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).join();
+        return n / ((System.nanoTime() - t0) / 1e9);
+    }
+}
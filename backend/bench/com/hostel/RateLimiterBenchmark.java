@@ -0,0 +1,38 @@
+package com.hostel;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Cost of one RateLimiter.acquire with 8 threads: all on one key (every CAS contended) and spread
+// over 10,000 clients (the map lookup dominates). The limit is high enough that nothing is refused.
+//   mvn test-compile exec:exec -Dbench.args="RateLimiterBenchmark"
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(8)
+public class RateLimiterBenchmark {
+    private static final String[] KEYS = new String[10_000];
+    static { for (int i = 0; i < KEYS.length; i++) KEYS[i] = "user:" + i; }
+
+    RateLimiter limiter;
+
+    @Setup
+    public void setUp() {
+        limiter = new RateLimiter(RateLimiter.Limit.parse("1000000000/s:1000000000"));
+    }
+
+    @Benchmark
+    public long sameKey() {
+        return limiter.acquire("user:1");
+    }
+
+    @Benchmark
+    public long manyKeys() {
+        return limiter.acquire(KEYS[ThreadLocalRandom.current().nextInt(KEYS.length)]);
+    }
+}
@@ -0,0 +1,50 @@
+package com.hostel;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// RoomIndex queries over a hostel of 26 blocks x 10 floors x 20 rooms (5,200 rooms), loaded into
+// RoomCache directly so no database is needed.
+//   mvn test-compile exec:exec -Dbench.args="RoomIndexBenchmark"
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RoomIndexBenchmark {
+    final RoomIndex.Filter blockFloor = new RoomIndex.Filter("K", 3, null, null);
+    final RoomIndex.Filter capacityRange = new RoomIndex.Filter(null, null, 2, 3);
+    final RoomIndex.Filter everything = new RoomIndex.Filter(null, null, null, null);
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        List<RoomCache.Room> rooms = new ArrayList<>();
+        int id = 1;
+        for (char block = 'A'; block <= 'Z'; block++)
+            for (int floor = 1; floor <= 10; floor++)
+                for (int n = 1; n <= 20; n++) {
+                    int capacity = 1 + (id % 4);
+                    rooms.add(new RoomCache.Room(id, block + Integer.toString(floor * 100 + n), capacity, id % 3 == 0 ? 0 : capacity));
+                    id++;
+                }
+        RoomCache.load(rooms);
+        RoomIndex.build();
+    }
+
+    @Benchmark
+    public int countBlockFloor() { return RoomIndex.count(blockFloor, false); }
+
+    @Benchmark
+    public Object searchBlockFloor() { return RoomIndex.search(blockFloor, false, 50); }
+
+    @Benchmark
+    public int countCapacityRange() { return RoomIndex.count(capacityRange, false); }
+
+    @Benchmark
+    public Object candidatesAnyRoom() { return RoomIndex.candidates(everything, RoomIndex.MAX_ATTEMPTS, Map.of()); }
+}
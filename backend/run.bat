@@ -28,7 +28,7 @@ echo Compilation successful!
 echo Starting server...
 echo.
 
-java -cp %CP% com.hostel.Main
+java -cp %CP% com.hostel.Main %*
 
 pause
 
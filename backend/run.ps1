@@ -40,7 +40,7 @@ Write-Host "Starting server..." -ForegroundColor Yellow
 Write-Host ""
 
 # Run the application
-java -cp $env:CP com.hostel.Main
+java -cp $env:CP com.hostel.Main @args
 
 # Restore original directory
 Pop-Location
@@ -0,0 +1,166 @@
+package com.hostel;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// Admission queue in front of POST /api/book.
+// Requests are numbered in arrival order and applied strictly in that order by one writer thread,
+// which drains up to maxBatch of them into a single BEGIN IMMEDIATE transaction (one savepoint per
+// booking, one commit per batch). Handlers never compete for the write lock, so the outcome is
+// first come, first served instead of whoever wins the SQLite busy retry. The queue is bounded:
+// when it is full submit() returns null and the caller answers 503. A student has at most one
+// request in the queue; submitting again returns the pending ticket. A ticket names either a room
+// or a student's ranked preferences, which RoomIndex.allocate resolves when the ticket is applied.
+class BookingQueue {
+    private static final long POLL_MS = 100;
+
+    static final class Ticket {
+        final long seq;
+        final int studentId;
+        final int roomId;
+        final List<RoomIndex.Filter> preferences;
+        final long positionAtSubmit;
+        final CompletableFuture<BookingService.Result> result = new CompletableFuture<>();
+        // Which preference (1-based) was booked; set before result completes.
+        volatile int preference;
+
+        Ticket(long seq, int studentId, int roomId, List<RoomIndex.Filter> preferences, long positionAtSubmit) {
+            this.seq = seq; this.studentId = studentId; this.roomId = roomId; this.preferences = preferences; this.positionAtSubmit = positionAtSubmit;
+        }
+    }
+
+    // A booking that failed with an unexpected SQL error is rolled back to its savepoint
+    // and reported on its own; the rest of the batch still commits.
+    private record Outcome(BookingService.Result result, SQLException error) {}
+
+    private final ArrayBlockingQueue<Ticket> queue;
+    private final int maxBatch;
+    private final ConcurrentHashMap<Integer, Ticket> byStudent = new ConcurrentHashMap<>();
+    private final Object submitLock = new Object();
+    private final Thread writer;
+    private long nextSeq;
+    private volatile long completedSeq;
+    private volatile boolean running = true;
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder applied = new LongAdder();
+    private final AtomicLong largestBatch = new AtomicLong();
+
+    BookingQueue(int capacity, int maxBatch) {
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.maxBatch = maxBatch;
+        this.writer = new Thread(this::run, "booking-writer");
+        writer.setDaemon(true);
+    }
+
+    void start() { writer.start(); }
+
+    // Returns the student's ticket, or null when the queue is full.
+    Ticket submit(int studentId, int roomId) { return submit(studentId, roomId, null); }
+
+    Ticket submit(int studentId, List<RoomIndex.Filter> preferences) { return submit(studentId, 0, preferences); }
+
+    private Ticket submit(int studentId, int roomId, List<RoomIndex.Filter> preferences) {
+        synchronized (submitLock) {
+            Ticket pending = byStudent.get(studentId);
+            if (pending != null && !pending.result.isDone()) return pending;
+            // Sequence numbers must follow queue order, so both are assigned under the lock.
+            Ticket t = new Ticket(nextSeq + 1, studentId, roomId, preferences, nextSeq + 1 - completedSeq);
+            if (!queue.offer(t)) { rejected.increment(); return null; }
+            nextSeq = t.seq;
+            byStudent.put(studentId, t);
+            submitted.increment();
+            return t;
+        }
+    }
+
+    // The student's latest ticket, pending or completed (one is kept per student so a client
+    // that stopped waiting can still collect the result).
+    Ticket ticketFor(int studentId) { return byStudent.get(studentId); }
+
+    // Requests ahead of this one, counting itself; 0 once it has been applied.
+    long position(Ticket t) { return Math.max(0, t.seq - completedSeq); }
+
+    Map<String, Object> stats() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("depth", queue.size());
+        m.put("submitted", submitted.sum());
+        m.put("rejected", rejected.sum());
+        m.put("batches", batches.sum());
+        m.put("applied", applied.sum());
+        m.put("largestBatch", largestBatch.get());
+        return m;
+    }
+
+    // Stops taking work once the queue is drained, waiting at most a few seconds.
+    void stop() {
+        running = false;
+        try { writer.join(5000); } catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+    }
+
+    private void run() {
+        List<Ticket> batch = new ArrayList<>(maxBatch);
+        while (running || !queue.isEmpty()) {
+            try {
+                Ticket first = queue.poll(POLL_MS, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+                queue.drainTo(batch, maxBatch - 1);
+                apply(batch);
+            } catch (InterruptedException e) {
+                break;
+            } catch (RuntimeException e) {
+                System.err.println("Booking batch failed: " + e);
+                for (Ticket t : batch) t.result.completeExceptionally(e);
+            } finally {
+                if (!batch.isEmpty()) completedSeq = batch.get(batch.size() - 1).seq;
+                batch.clear();
+            }
+        }
+    }
+
+    private void apply(List<Ticket> batch) {
+        List<Outcome> outcomes;
+        try {
+            outcomes = BookingService.inTransaction(c -> {
+                List<Outcome> out = new ArrayList<>(batch.size());
+                // Free seats of the rooms booked so far in this transaction, for RoomIndex.allocate.
+                Map<Integer, Integer> batchSeats = new HashMap<>();
+                for (Ticket t : batch) {
+                    try {
+                        if (t.preferences == null) {
+                            BookingService.Result r = BookingService.book(c, t.studentId, t.roomId);
+                            RoomIndex.seen(batchSeats, t.roomId, r);
+                            out.add(new Outcome(r, null));
+                            continue;
+                        }
+                        RoomIndex.Allocation a = RoomIndex.allocate(c, t.studentId, t.preferences, batchSeats);
+                        t.preference = a.preference();
+                        out.add(new Outcome(a.result(), null));
+                    } catch (SQLException e) { out.add(new Outcome(null, e)); }
+                }
+                return out;
+            });
+        } catch (SQLException e) {
+            for (Ticket t : batch) t.result.completeExceptionally(e);
+            return;
+        }
+        batches.increment();
+        applied.add(batch.size());
+        largestBatch.accumulateAndGet(batch.size(), Math::max);
+        for (int i = 0; i < batch.size(); i++) {
+            Outcome o = outcomes.get(i);
+            if (o.error() != null) batch.get(i).result.completeExceptionally(o.error());
+            else batch.get(i).result.complete(BookingService.committed(o.result()));
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.hostel;
+
+import java.sql.*;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+// Booking and cancellation as short BEGIN IMMEDIATE transactions on the writer connection.
+// Availability is taken with a conditional decrement (available > 0), and the partial unique index
+// ux_bookings_active_student guarantees at most one active booking per student, so there is no
+// check-then-act window. SQLITE_BUSY/SQLITE_LOCKED is retried a bounded number of times with jittered backoff.
+class BookingService {
+    private static final int MAX_ATTEMPTS = 5;
+    private static final long BASE_BACKOFF_MS = 5;
+
+    private static final LongAdder busyRetries = new LongAdder();
+    private static final LongAdder busyFailures = new LongAdder();
+
+    enum Status { BOOKED, ALREADY_BOOKED, NOT_AVAILABLE, CANCELLED, NO_BOOKING }
+
+    record Result(Status status, int roomId, String roomNumber, int available) {
+        static Result of(Status status) { return new Result(status, 0, null, 0); }
+    }
+
+    // Raised when the database stayed locked for every attempt.
+    static class BusyException extends SQLException {
+        private static final long serialVersionUID = 1L;
+
+        BusyException(SQLException cause) { super("Database busy", cause); }
+    }
+
+    interface Work<T> { T run(Connection c) throws SQLException; }
+
+    static Result book(int studentId, int roomId) throws SQLException {
+        return committed(inTransaction(c -> book(c, studentId, roomId)));
+    }
+
+    static Result cancel(int studentId) throws SQLException {
+        return committed(inTransaction(c -> cancel(c, studentId)));
+    }
+
+    // Publishes a committed result to the in-memory room catalogue.
+    static Result committed(Result r) {
+        if (r.status() == Status.BOOKED) RoomCache.adjust(r.roomId(), -1);
+        else if (r.status() == Status.CANCELLED) RoomCache.adjust(r.roomId(), 1);
+        return r;
+    }
+
+    // Books inside the caller's transaction. A savepoint keeps a failed booking from
+    // undoing other work in the same transaction.
+    static Result book(Connection c, int studentId, int roomId) throws SQLException {
+        try (Statement st = c.createStatement()) {
+            st.execute("SAVEPOINT book");
+            try {
+                String roomNumber; int available;
+                try (PreparedStatement ps = c.prepareStatement("UPDATE rooms SET available=available-1 WHERE id=? AND available>0 RETURNING room_number,available")) {
+                    ps.setInt(1, roomId);
+                    ResultSet rs = ps.executeQuery();
+                    if (!rs.next()) { st.execute("RELEASE book"); return Result.of(Status.NOT_AVAILABLE); }
+                    roomNumber = rs.getString(1); available = rs.getInt(2);
+                }
+                int bookingId;
+                try (PreparedStatement ps = c.prepareStatement("INSERT INTO bookings(student_id,room_id,status,created_at) VALUES(?,?,'active',?) RETURNING id")) {
+                    ps.setInt(1, studentId); ps.setInt(2, roomId); ps.setString(3, LocalDateTime.now().toString());
+                    ResultSet rs = ps.executeQuery();
+                    rs.next();
+                    bookingId = rs.getInt(1);
+                } catch (SQLException e) {
+                    if (!Database.isConstraint(e)) throw e;
+                    st.execute("ROLLBACK TO book"); st.execute("RELEASE book");
+                    return Result.of(Status.ALREADY_BOOKED);
+                }
+                st.execute("RELEASE book");
+                EventLog.booked(bookingId, studentId, roomId);
+                return new Result(Status.BOOKED, roomId, roomNumber, available);
+            } catch (SQLException e) {
+                st.execute("ROLLBACK TO book"); st.execute("RELEASE book");
+                throw e;
+            }
+        }
+    }
+
+    static Result cancel(Connection c, int studentId) throws SQLException {
+        int bookingId, roomId;
+        try (PreparedStatement ps = c.prepareStatement("UPDATE bookings SET status='cancelled' WHERE student_id=? AND status='active' RETURNING id,room_id")) {
+            ps.setInt(1, studentId);
+            ResultSet rs = ps.executeQuery();
+            if (!rs.next()) return Result.of(Status.NO_BOOKING);
+            bookingId = rs.getInt(1); roomId = rs.getInt(2);
+        }
+        EventLog.cancelled(bookingId, studentId, roomId);
+        try (PreparedStatement ps = c.prepareStatement("UPDATE rooms SET available=available+1 WHERE id=? RETURNING room_number,available")) {
+            ps.setInt(1, roomId);
+            ResultSet rs = ps.executeQuery();
+            rs.next();
+            return new Result(Status.CANCELLED, roomId, rs.getString(1), rs.getInt(2));
+        }
+    }
+
+    // Runs work in BEGIN IMMEDIATE ... COMMIT on the writer connection, retrying when SQLite is busy.
+    // Events the work appends to the EventLog are committed or rolled back with it.
+    static <T> T inTransaction(Work<T> work) throws SQLException {
+        for (int attempt = 1; ; attempt++) {
+            try (Connection c = Database.getConnection(); Statement st = c.createStatement()) {
+                st.execute("BEGIN IMMEDIATE");
+                EventLog.begin();
+                try {
+                    T result = work.run(c);
+                    EventLog.prepare(c);
+                    st.execute("COMMIT");
+                    EventLog.commit();
+                    return result;
+                } catch (SQLException | RuntimeException e) {
+                    try { st.execute("ROLLBACK"); } catch (SQLException ignored) { }
+                    EventLog.rollback();
+                    throw e;
+                }
+            } catch (SQLException e) {
+                if (!Database.isBusy(e)) throw e;
+                if (attempt >= MAX_ATTEMPTS) { busyFailures.increment(); throw new BusyException(e); }
+                busyRetries.increment();
+                backoff(attempt);
+            }
+        }
+    }
+
+    private static void backoff(int attempt) throws SQLException {
+        long max = BASE_BACKOFF_MS << (attempt - 1);
+        try { Thread.sleep(ThreadLocalRandom.current().nextLong(max / 2, max + 1)); }
+        catch (InterruptedException e) { Thread.currentThread().interrupt(); throw new SQLException("Interrupted during busy backoff"); }
+    }
+
+    static Map<String, Object> stats() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("busyRetries", busyRetries.sum());
+        m.put("busyFailures", busyFailures.sum());
+        return m;
+    }
+}
@@ -0,0 +1,200 @@
+package com.hostel;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.*;
+import java.util.*;
+
+// Admin bulk operations: room import and waitlist allocation.
+// Rows are validated up front and written in chunks of BATCH_SIZE, one BEGIN IMMEDIATE transaction
+// per chunk, so a 600-room import is two commits instead of 600 and the writer is never held for long.
+// Every rejected row is reported with its position; the rest of the request still goes through.
+class BulkService {
+    static final int BATCH_SIZE = 500;
+    static final int MAX_ROWS = 20_000;
+
+    record RoomRow(int row, String roomNumber, Integer capacity, Integer available) {}
+
+    private record Chunk(List<RoomCache.Room> inserted, List<Map<String, Object>> errors) {}
+
+    // Outcome for one waitlist entry: booked is set on success, error otherwise.
+    private record Allocation(int row, Integer studentId, BookingService.Result booked, String error) {}
+
+    // Rows from a JSON array of {roomNumber, capacity, available?} objects. available defaults to capacity.
+    static List<RoomRow> roomsFromJson(List<?> items) {
+        List<RoomRow> rows = new ArrayList<>();
+        int n = 0;
+        for (Object item : items) {
+            n++;
+            Map<?, ?> m = item instanceof Map ? (Map<?, ?>) item : Collections.emptyMap();
+            rows.add(new RoomRow(n, text(m.get("roomNumber")), number(m.get("capacity")), number(m.get("available"))));
+        }
+        return rows;
+    }
+
+    // Rows from CSV lines "roomNumber,capacity[,available]". A first line whose capacity column
+    // is not a number (e.g. "roomNumber,capacity,available") is taken as a header and skipped.
+    static List<RoomRow> roomsFromCsv(byte[] body) {
+        List<RoomRow> rows = new ArrayList<>();
+        String[] lines = new String(body, StandardCharsets.UTF_8).split("\r?\n");
+        int n = 0;
+        for (int i = 0; i < lines.length; i++) {
+            String line = lines[i].trim();
+            if (line.isEmpty()) continue;
+            String[] f = line.split(",", -1);
+            if (n == 0 && f.length > 1 && !unquote(f[1]).isEmpty() && number(unquote(f[1])) == null) continue;
+            n++;
+            rows.add(new RoomRow(n, text(unquote(f[0])), f.length > 1 ? number(unquote(f[1])) : null, f.length > 2 ? number(unquote(f[2])) : null));
+        }
+        return rows;
+    }
+
+    static Map<String, Object> importRooms(List<RoomRow> rows) throws SQLException {
+        long start = System.nanoTime();
+        List<Map<String, Object>> errors = new ArrayList<>();
+        List<RoomRow> valid = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        for (RoomRow r : rows) {
+            String problem = null;
+            if (r.roomNumber() == null) problem = "roomNumber is required";
+            else if (r.capacity() == null || r.capacity() < 1) problem = "capacity must be a positive number";
+            else if (r.available() != null && (r.available() < 0 || r.available() > r.capacity())) problem = "available must be between 0 and capacity";
+            else if (!seen.add(r.roomNumber())) problem = "Duplicate roomNumber in request";
+            if (problem != null) errors.add(error(r.row(), "roomNumber", r.roomNumber(), problem));
+            else valid.add(r);
+        }
+
+        int inserted = 0;
+        for (int from = 0; from < valid.size(); from += BATCH_SIZE) {
+            List<RoomRow> part = valid.subList(from, Math.min(valid.size(), from + BATCH_SIZE));
+            Chunk chunk = BookingService.inTransaction(c -> insertRooms(c, part));
+            for (RoomCache.Room room : chunk.inserted()) RoomCache.put(room);
+            inserted += chunk.inserted().size();
+            errors.addAll(chunk.errors());
+        }
+        errors.sort(Comparator.comparingInt(e -> (Integer) e.get("row")));
+        return summary(rows.size(), "inserted", inserted, errors, start);
+    }
+
+    // New ids are read back as everything above the previous MAX(id): nothing else can insert
+    // rooms while this transaction holds the write lock.
+    private static Chunk insertRooms(Connection c, List<RoomRow> part) throws SQLException {
+        int maxId;
+        try (PreparedStatement ps = c.prepareStatement("SELECT COALESCE(MAX(id),0) FROM rooms")) {
+            ResultSet rs = ps.executeQuery();
+            rs.next();
+            maxId = rs.getInt(1);
+        }
+        List<Map<String, Object>> errors = new ArrayList<>();
+        try (PreparedStatement ps = c.prepareStatement("INSERT OR IGNORE INTO rooms(room_number,capacity,available,held) VALUES(?,?,?,?)")) {
+            for (RoomRow r : part) {
+                int available = r.available() != null ? r.available() : r.capacity();
+                ps.setString(1, r.roomNumber()); ps.setInt(2, r.capacity()); ps.setInt(3, available); ps.setInt(4, r.capacity() - available);
+                ps.addBatch();
+            }
+            int[] counts = ps.executeBatch();
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] == 0) errors.add(error(part.get(i).row(), "roomNumber", part.get(i).roomNumber(), "Room already exists"));
+            }
+        }
+        List<RoomCache.Room> inserted = new ArrayList<>();
+        try (PreparedStatement ps = c.prepareStatement("SELECT id,room_number,capacity,available FROM rooms WHERE id>?")) {
+            ps.setInt(1, maxId);
+            ResultSet rs = ps.executeQuery();
+            while (rs.next()) inserted.add(new RoomCache.Room(rs.getInt(1), rs.getString(2), rs.getInt(3), rs.getInt(4)));
+        }
+        for (RoomCache.Room room : inserted) EventLog.roomAdded(room);
+        return new Chunk(inserted, errors);
+    }
+
+    // Assigns each student in waitlist order to the first room (by room number) that still has a seat,
+    // optionally only among roomNumbers. Each seat goes through BookingService.book, so the usual
+    // one-active-booking and no-overbooking guarantees hold.
+    static Map<String, Object> allocate(List<Integer> studentIds, Set<String> roomNumbers) throws SQLException {
+        long start = System.nanoTime();
+        List<Map<String, Object>> allocated = new ArrayList<>();
+        List<Map<String, Object>> errors = new ArrayList<>();
+        for (int from = 0; from < studentIds.size(); from += BATCH_SIZE) {
+            int offset = from;
+            List<Integer> part = studentIds.subList(from, Math.min(studentIds.size(), from + BATCH_SIZE));
+            List<Allocation> results = BookingService.inTransaction(c -> allocate(c, part, offset, roomNumbers));
+            for (Allocation a : results) {
+                if (a.booked() == null) { errors.add(error(a.row(), "studentId", a.studentId(), a.error())); continue; }
+                BookingService.Result r = BookingService.committed(a.booked());
+                allocated.add(mapOf("row", a.row(), "studentId", a.studentId(), "roomId", r.roomId(), "roomNumber", r.roomNumber()));
+            }
+        }
+        Map<String, Object> out = summary(studentIds.size(), "allocatedCount", allocated.size(), errors, start);
+        out.put("allocated", allocated);
+        return out;
+    }
+
+    private static List<Allocation> allocate(Connection c, List<Integer> part, int offset, Set<String> roomNumbers) throws SQLException {
+        Deque<Integer> open = new ArrayDeque<>();
+        try (PreparedStatement ps = c.prepareStatement("SELECT id,room_number FROM rooms WHERE available>0 ORDER BY room_number")) {
+            ResultSet rs = ps.executeQuery();
+            while (rs.next()) if (roomNumbers == null || roomNumbers.contains(rs.getString(2))) open.add(rs.getInt(1));
+        }
+        List<Allocation> results = new ArrayList<>();
+        for (int i = 0; i < part.size(); i++) {
+            Integer studentId = part.get(i);
+            int row = offset + i + 1;
+            if (studentId == null) { results.add(new Allocation(row, null, null, "studentId must be a number")); continue; }
+            String role = null; boolean booked = false;
+            try (PreparedStatement ps = c.prepareStatement("SELECT s.role, EXISTS(SELECT 1 FROM bookings b WHERE b.student_id=s.id AND b.status='active') FROM students s WHERE s.id=?")) {
+                ps.setInt(1, studentId);
+                ResultSet rs = ps.executeQuery();
+                if (rs.next()) { role = rs.getString(1); booked = rs.getBoolean(2); }
+            }
+            if (!"student".equals(role)) { results.add(new Allocation(row, studentId, null, "Unknown student")); continue; }
+            if (booked) { results.add(new Allocation(row, studentId, null, "Student already has an active booking")); continue; }
+            String problem = "No rooms available";
+            while (!open.isEmpty()) {
+                BookingService.Result r = BookingService.book(c, studentId, open.peek());
+                if (r.status() == BookingService.Status.NOT_AVAILABLE) { open.poll(); continue; }
+                if (r.status() == BookingService.Status.ALREADY_BOOKED) { problem = "Student already has an active booking"; break; }
+                if (r.available() == 0) open.poll();
+                problem = null;
+                results.add(new Allocation(row, studentId, r, null));
+                break;
+            }
+            if (problem != null) results.add(new Allocation(row, studentId, null, problem));
+        }
+        return results;
+    }
+
+    private static Map<String, Object> summary(int rows, String countName, int count, List<Map<String, Object>> errors, long startNanos) {
+        double seconds = Math.max(1e-9, (System.nanoTime() - startNanos) / 1e9);
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("rows", rows);
+        m.put(countName, count);
+        m.put("failed", errors.size());
+        m.put("elapsedMs", Math.round(seconds * 1000));
+        m.put("rowsPerSecond", Math.round(rows / seconds));
+        m.put("errors", errors);
+        return m;
+    }
+
+    private static Map<String, Object> error(int row, String key, Object value, String message) {
+        return mapOf("row", row, key, value, "message", message);
+    }
+
+    private static Map<String, Object> mapOf(Object... kv) {
+        Map<String, Object> m = new LinkedHashMap<>();
+        for (int i = 0; i + 1 < kv.length; i += 2) m.put(String.valueOf(kv[i]), kv[i + 1]);
+        return m;
+    }
+
+    private static String unquote(String s) {
+        s = s.trim();
+        return s.length() >= 2 && s.startsWith("\"") && s.endsWith("\"") ? s.substring(1, s.length() - 1).replace("\"\"", "\"").trim() : s;
+    }
+
+    private static String text(Object o) {
+        String s = o == null ? null : String.valueOf(o).trim();
+        return s == null || s.isEmpty() ? null : s;
+    }
+
+    private static Integer number(Object o) {
+        try { return o == null ? null : Integer.parseInt(String.valueOf(o).trim()); } catch (NumberFormatException e) { return null; }
+    }
+}
@@ -0,0 +1,215 @@
+package com.hostel;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// Fixed-size pool of long-lived SQLite connections. Each connection keeps its own
+// LRU cache of prepared statements, so handlers can keep writing
+// try (PreparedStatement ps = c.prepareStatement(sql)) and only the first call parses the SQL.
+// A connection that fails to reset on release is replaced; if the replacement cannot be opened either,
+// the slot stays in the pool marked broken and the next acquire() tries to open it again.
+class ConnectionPool {
+    private static final int STATEMENT_CACHE_SIZE = 64;
+
+    private final String name;
+    private final String url;
+    private final Properties props;
+    private final List<String> pragmas;
+    private final int size;
+    private final long timeoutMillis;
+    private final BlockingQueue<Slot> idle;
+    private final List<Slot> all = new ArrayList<>();
+
+    private final AtomicInteger inUse = new AtomicInteger();
+    private final LongAdder acquired = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder statementHits = new LongAdder();
+    private final LongAdder statementMisses = new LongAdder();
+    private final LongAdder reopenFailures = new LongAdder();
+
+    ConnectionPool(String name, String url, Properties props, List<String> pragmas, int size, long timeoutMillis) throws SQLException {
+        this.name = name; this.url = url; this.props = props; this.pragmas = pragmas;
+        this.size = size; this.timeoutMillis = timeoutMillis;
+        this.idle = new ArrayBlockingQueue<>(size);
+        for (int i = 0; i < size; i++) { Slot s = new Slot(open()); all.add(s); idle.add(s); }
+    }
+
+    private Connection open() throws SQLException {
+        Connection c = DriverManager.getConnection(url, props);
+        try (Statement st = c.createStatement()) { for (String p : pragmas) st.execute(p); }
+        return c;
+    }
+
+    Connection acquire() throws SQLException {
+        long t0 = System.nanoTime();
+        Slot s = idle.poll();
+        if (s == null) {
+            try { s = idle.poll(timeoutMillis, TimeUnit.MILLISECONDS); }
+            catch (InterruptedException e) { Thread.currentThread().interrupt(); throw new SQLException("Interrupted waiting for " + name + " connection"); }
+            if (s == null) { timeouts.increment(); throw new SQLException("Timed out waiting for " + name + " connection"); }
+        }
+        if (s.conn == null) {
+            try { s.conn = open(); }
+            catch (SQLException e) { reopenFailures.increment(); idle.offer(s); throw e; }
+        }
+        waitNanos.add(System.nanoTime() - t0);
+        acquired.increment();
+        inUse.incrementAndGet();
+        return s.lease();
+    }
+
+    private void release(Slot s) {
+        try {
+            if (!s.conn.getAutoCommit()) { s.conn.rollback(); s.conn.setAutoCommit(true); }
+        } catch (SQLException e) {
+            // Connection is unusable; replace it so the pool does not shrink.
+            s.discard();
+            try { s.conn = open(); }
+            catch (SQLException e2) {
+                reopenFailures.increment();
+                s.conn = null;
+                System.err.println("Reopening " + name + " connection failed, retrying on next use: " + e2.getMessage());
+            }
+        }
+        inUse.decrementAndGet();
+        idle.offer(s);
+    }
+
+    void close() {
+        for (Slot s : all) s.discard();
+    }
+
+    Map<String, Object> stats() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        long n = acquired.sum();
+        int cached = 0;
+        for (Slot s : all) cached += s.cachedCount();
+        m.put("size", size);
+        m.put("inUse", inUse.get());
+        m.put("acquired", n);
+        m.put("timeouts", timeouts.sum());
+        m.put("waitMicrosTotal", waitNanos.sum() / 1000);
+        m.put("waitMicrosAvg", n == 0 ? 0 : waitNanos.sum() / 1000 / n);
+        m.put("statementsCached", cached);
+        m.put("statementHits", statementHits.sum());
+        m.put("statementMisses", statementMisses.sum());
+        m.put("reopenFailures", reopenFailures.sum());
+        return m;
+    }
+
+    // One physical connection plus its statement cache.
+    private final class Slot {
+        volatile Connection conn;
+        private final LinkedHashMap<String, CachedStatement> cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override protected boolean removeEldestEntry(Map.Entry<String, CachedStatement> e) {
+                if (size() <= STATEMENT_CACHE_SIZE) return false;
+                e.getValue().closeQuietly();
+                return true;
+            }
+        };
+
+        Slot(Connection conn) { this.conn = conn; }
+
+        Connection lease() {
+            Lease lease = new Lease(this);
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class}, lease);
+        }
+
+        // Only touched by the thread holding the lease, so no locking is needed.
+        PreparedStatement prepare(String sql) throws SQLException {
+            CachedStatement cs = cache.get(sql);
+            if (cs == null) {
+                statementMisses.increment();
+                cs = new CachedStatement(conn.prepareStatement(sql));
+                cache.put(sql, cs);
+            } else {
+                statementHits.increment();
+            }
+            return cs.proxy;
+        }
+
+        int cachedCount() { return cache.size(); }
+
+        void discard() {
+            for (CachedStatement cs : cache.values()) cs.closeQuietly();
+            cache.clear();
+            Connection c = conn;
+            if (c != null) try { c.close(); } catch (SQLException ignored) { }
+        }
+    }
+
+    // Per-acquire view of a pooled connection: close() returns it to the pool.
+    private final class Lease implements InvocationHandler {
+        private final Slot slot;
+        private final long leasedAt = System.nanoTime();
+        private boolean closed;
+
+        Lease(Slot slot) { this.slot = slot; }
+
+        @Override
+        public Object invoke(Object proxy, Method m, Object[] args) throws Throwable {
+            switch (m.getName()) {
+                case "close":
+                    if (!closed) { closed = true; release(slot); Metrics.addDbTime(System.nanoTime() - leasedAt); }
+                    return null;
+                case "isClosed":
+                    return closed;
+                case "equals": return proxy == args[0];
+                case "hashCode": return System.identityHashCode(proxy);
+                case "toString": return name + " lease of " + slot.conn;
+                default:
+                    break;
+            }
+            if (closed) throw new SQLException("Connection already returned to the pool");
+            if (m.getName().equals("prepareStatement") && args.length == 1) return slot.prepare((String) args[0]);
+            try { return m.invoke(slot.conn, args); }
+            catch (InvocationTargetException e) { throw e.getCause(); }
+        }
+    }
+
+    // A cached statement whose close() only resets it (parameters and any unexecuted batch); the last
+    // result set is closed so an abandoned cursor does not pin a read transaction.
+    private static final class CachedStatement implements InvocationHandler {
+        private final PreparedStatement target;
+        private final PreparedStatement proxy;
+        private ResultSet last;
+
+        CachedStatement(PreparedStatement target) {
+            this.target = target;
+            this.proxy = (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(), new Class<?>[]{PreparedStatement.class}, this);
+        }
+
+        @Override
+        public Object invoke(Object p, Method m, Object[] args) throws Throwable {
+            switch (m.getName()) {
+                case "close":
+                    if (last != null) { last.close(); last = null; }
+                    target.clearParameters();
+                    target.clearBatch();
+                    return null;
+                case "isClosed": return false;
+                case "equals": return p == args[0];
+                case "hashCode": return System.identityHashCode(p);
+                default:
+                    break;
+            }
+            Object r;
+            try { r = m.invoke(target, args); }
+            catch (InvocationTargetException e) { throw e.getCause(); }
+            if (r instanceof ResultSet) last = (ResultSet) r;
+            return r;
+        }
+
+        void closeQuietly() { try { target.close(); } catch (SQLException ignored) { } }
+    }
+}
@@ -0,0 +1,68 @@
+package com.hostel;
+
+import java.sql.*;
+import java.util.*;
+
+// Recomputes each room's availability from the bookings table (capacity minus the seats held back when
+// the room was created, minus active bookings) and compares it with the denormalised rooms.available
+// counter and with the state rebuilt by the EventLog. It runs as a write transaction so no booking can commit halfway through the comparison;
+// the count per room comes from idx_bookings_room_status, so a few thousand rooms take milliseconds.
+class Consistency {
+    private static final int MAX_REPORTED = 500;
+
+    static Map<String, Object> check() throws SQLException {
+        long start = System.nanoTime();
+        return BookingService.inTransaction(c -> {
+            Map<Integer, RoomCache.Room> logged = EventLog.isOpen() ? EventLog.rooms() : null;
+            List<Map<String, Object>> drift = new ArrayList<>();
+            int rooms = 0, drifted = 0;
+            try (PreparedStatement ps = c.prepareStatement("SELECT r.id,r.room_number,r.capacity,r.available,r.held,"
+                    + "(SELECT COUNT(*) FROM bookings b WHERE b.room_id=r.id AND b.status='active') FROM rooms r ORDER BY r.room_number")) {
+                ResultSet rs = ps.executeQuery();
+                while (rs.next()) {
+                    rooms++;
+                    int id = rs.getInt(1), capacity = rs.getInt(3), available = rs.getInt(4), held = rs.getInt(5), active = rs.getInt(6);
+                    int fromBookings = capacity - held - active;
+                    RoomCache.Room inLog = logged == null ? null : logged.remove(id);
+                    boolean logOk = logged == null || (inLog != null && inLog.available() == fromBookings);
+                    if (available == fromBookings && logOk && fromBookings >= 0) continue;
+                    drifted++;
+                    if (drift.size() >= MAX_REPORTED) continue;
+                    Map<String, Object> m = new LinkedHashMap<>();
+                    m.put("roomId", id);
+                    m.put("roomNumber", rs.getString(2));
+                    m.put("capacity", capacity);
+                    if (held > 0) m.put("held", held);
+                    m.put("activeBookings", active);
+                    m.put("expected", fromBookings);
+                    m.put("available", available);
+                    if (logged != null) m.put("eventLog", inLog == null ? null : inLog.available());
+                    if (fromBookings < 0) m.put("overbooked", -fromBookings);
+                    drift.add(m);
+                }
+            }
+            // Rooms the log knows about but the table does not.
+            if (logged != null) {
+                for (RoomCache.Room r : logged.values()) {
+                    drifted++;
+                    if (drift.size() < MAX_REPORTED) {
+                        Map<String, Object> m = new LinkedHashMap<>();
+                        m.put("roomId", r.id());
+                        m.put("roomNumber", r.roomNumber());
+                        m.put("eventLog", r.available());
+                        m.put("message", "Not in the rooms table");
+                        drift.add(m);
+                    }
+                }
+            }
+            Map<String, Object> report = new LinkedHashMap<>();
+            report.put("ok", drifted == 0);
+            report.put("rooms", rooms);
+            report.put("drifted", drifted);
+            report.put("eventLogChecked", logged != null);
+            report.put("elapsedMs", (System.nanoTime() - start) / 1_000_000);
+            report.put("drift", drift);
+            return report;
+        });
+    }
+}
@@ -0,0 +1,60 @@
+package com.hostel;
+
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+// Response compression and revalidation helpers shared by JSON responses and static files.
+// Bodies below GZIP_MIN_BYTES are sent as they are: the gzip header and a round of deflate cost
+// more than they save on a few hundred bytes.
+class ContentEncoding {
+    static final int GZIP_MIN_BYTES = 1024;
+
+    // True when Accept-Encoding lists gzip (or *) without q=0.
+    static boolean acceptsGzip(HttpExchange ex) {
+        for (String header : ex.getRequestHeaders().getOrDefault("Accept-Encoding", List.of())) {
+            for (String part : header.split(",")) {
+                String[] p = part.trim().split(";");
+                String coding = p[0].trim();
+                if (!coding.equalsIgnoreCase("gzip") && !coding.equals("*")) continue;
+                boolean refused = p.length > 1 && p[1].trim().replace(" ", "").matches("q=0(\\.0*)?");
+                if (!refused) return true;
+            }
+        }
+        return false;
+    }
+
+    static byte[] gzip(byte[] body, int len) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(len / 3 + 64);
+        try (GZIPOutputStream gz = new GZIPOutputStream(out, 8192)) { gz.write(body, 0, len); }
+        catch (IOException e) { throw new UncheckedIOException(e); }
+        return out.toByteArray();
+    }
+
+    // Compressed copy of body worth sending, or null when it is too small or does not shrink.
+    static byte[] gzipIfSmaller(byte[] body) {
+        if (body.length < GZIP_MIN_BYTES) return null;
+        byte[] gz = gzip(body, body.length);
+        return gz.length < body.length ? gz : null;
+    }
+
+    // The gzip representation gets its own strong ETag, as two encodings are different bytes.
+    static String gzipEtag(String etag) { return etag.substring(0, etag.length() - 1) + "-gz\""; }
+
+    // If-None-Match against either representation of the same content (it may list several tags, or *).
+    static boolean notModified(HttpExchange ex, String etag) {
+        String inm = ex.getRequestHeaders().getFirst("If-None-Match");
+        if (inm == null) return false;
+        String gz = gzipEtag(etag);
+        for (String tag : inm.split(",")) {
+            String t = tag.trim();
+            if (t.startsWith("W/")) t = t.substring(2);
+            if (t.equals("*") || t.equals(etag) || t.equals(gz)) return true;
+        }
+        return false;
+    }
+}
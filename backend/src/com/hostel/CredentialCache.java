@@ -0,0 +1,69 @@
+package com.hostel;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// Remembers recently verified logins so a student who logs in again (new tab, expired session)
+// does not pay for another PBKDF2 run. Only an HMAC of the password under a random per-process key
+// is kept, next to the stored hash it was checked against: once the row's password changes the
+// entry no longer matches. Entries expire after ttlMillis; beyond maxEntries new ones are not added.
+class CredentialCache {
+    private record Entry(String storedHash, byte[] mac, long expiresAt) {}
+
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final byte[] key = new byte[32];
+    private final long ttlMillis;
+    private final int maxEntries;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    CredentialCache(long ttlMillis, int maxEntries) {
+        this.ttlMillis = ttlMillis;
+        this.maxEntries = maxEntries;
+        new SecureRandom().nextBytes(key);
+    }
+
+    // True when this password was verified against storedHash within the TTL.
+    boolean matches(String login, String storedHash, String password) {
+        Entry e = entries.get(login);
+        if (e == null || e.expiresAt < System.currentTimeMillis() || !e.storedHash.equals(storedHash)) { misses.increment(); return false; }
+        boolean ok = MessageDigest.isEqual(e.mac, mac(password));
+        if (ok) hits.increment(); else misses.increment();
+        return ok;
+    }
+
+    void put(String login, String storedHash, String password) {
+        long now = System.currentTimeMillis();
+        if (entries.size() >= maxEntries) {
+            entries.values().removeIf(e -> e.expiresAt < now);
+            if (entries.size() >= maxEntries) return;
+        }
+        entries.put(login, new Entry(storedHash, mac(password), now + ttlMillis));
+    }
+
+    Map<String, Object> stats() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("entries", entries.size());
+        m.put("hits", hits.sum());
+        m.put("misses", misses.sum());
+        return m;
+    }
+
+    private byte[] mac(String password) {
+        try {
+            Mac m = Mac.getInstance("HmacSHA256");
+            m.init(new SecretKeySpec(key, "HmacSHA256"));
+            return m.doFinal(password.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HmacSHA256 not available", e);
+        }
+    }
+}
@@ -2,25 +2,157 @@ package com.hostel;
 
 import java.io.File;
 import java.sql.*;
+import java.util.*;
 
 public class Database {
+    private static final long ACQUIRE_TIMEOUT_MS = 5000;
+    // Applied to every pooled connection when it is opened.
+    private static final List<String> CONNECTION_PRAGMAS = List.of(
+            "PRAGMA busy_timeout=5000",
+            "PRAGMA synchronous=NORMAL",
+            "PRAGMA cache_size=-8000",
+            "PRAGMA temp_store=MEMORY",
+            "PRAGMA mmap_size=268435456"
+    );
+
     private static String dbPath;
+    private static ConnectionPool writer;
+    private static ConnectionPool readers;
 
     public static void init(String path) throws Exception {
+        init(path, Math.max(2, Runtime.getRuntime().availableProcessors()));
+    }
+
+    // One writer connection (SQLite serialises writers anyway) and readerCount read-only connections.
+    public static void init(String path, int readerCount) throws Exception {
         dbPath = path;
         File f = new File(dbPath).getParentFile();
         if (f != null && !f.exists()) f.mkdirs();
+        String url = "jdbc:sqlite:" + dbPath;
+        // WAL is persistent in the database file, so it only needs to be set once.
+        try (Connection c = DriverManager.getConnection(url); Statement st = c.createStatement()) {
+            st.execute("PRAGMA journal_mode=WAL");
+        }
+        close();
+        writer = new ConnectionPool("writer", url, new Properties(), CONNECTION_PRAGMAS, 1, ACQUIRE_TIMEOUT_MS);
         try (Connection c = getConnection()) {
-            try (Statement st = c.createStatement()) {
-                st.executeUpdate("CREATE TABLE IF NOT EXISTS students (id INTEGER PRIMARY KEY AUTOINCREMENT, name TEXT NOT NULL, email TEXT UNIQUE NOT NULL, password TEXT NOT NULL, role TEXT NOT NULL)");
-                st.executeUpdate("CREATE TABLE IF NOT EXISTS rooms (id INTEGER PRIMARY KEY AUTOINCREMENT, room_number TEXT UNIQUE NOT NULL, capacity INTEGER NOT NULL, available INTEGER NOT NULL)");
-                st.executeUpdate("CREATE TABLE IF NOT EXISTS bookings (id INTEGER PRIMARY KEY AUTOINCREMENT, student_id INTEGER NOT NULL, room_id INTEGER NOT NULL, status TEXT NOT NULL, created_at TEXT NOT NULL, FOREIGN KEY(student_id) REFERENCES students(id), FOREIGN KEY(room_id) REFERENCES rooms(id))");
+            migrate(c);
+            seed(c);
+        }
+        // Readers are opened after the migrations so none of them starts out with a stale schema.
+        List<String> readPragmas = new ArrayList<>(CONNECTION_PRAGMAS);
+        readPragmas.add("PRAGMA query_only=ON");
+        readers = new ConnectionPool("reader", url, new Properties(), readPragmas, readerCount, ACQUIRE_TIMEOUT_MS);
+    }
+
+    // Schema changes, applied in order. PRAGMA user_version holds the number of migrations a database
+    // has already run, so each one runs exactly once; never edit an entry that has shipped, append a new one.
+    // Migration 1 uses IF NOT EXISTS because databases created before versioning already have the tables.
+    private static final List<String[]> MIGRATIONS = List.of(
+            new String[]{
+                    "CREATE TABLE IF NOT EXISTS students (id INTEGER PRIMARY KEY AUTOINCREMENT, name TEXT NOT NULL, email TEXT UNIQUE NOT NULL, password TEXT NOT NULL, role TEXT NOT NULL)",
+                    "CREATE TABLE IF NOT EXISTS rooms (id INTEGER PRIMARY KEY AUTOINCREMENT, room_number TEXT UNIQUE NOT NULL, capacity INTEGER NOT NULL, available INTEGER NOT NULL)",
+                    "CREATE TABLE IF NOT EXISTS bookings (id INTEGER PRIMARY KEY AUTOINCREMENT, student_id INTEGER NOT NULL, room_id INTEGER NOT NULL, status TEXT NOT NULL, created_at TEXT NOT NULL, FOREIGN KEY(student_id) REFERENCES students(id), FOREIGN KEY(room_id) REFERENCES rooms(id))",
+                    "CREATE TABLE IF NOT EXISTS sessions (token TEXT PRIMARY KEY, user_id INTEGER NOT NULL, role TEXT NOT NULL, created_at INTEGER NOT NULL, last_seen INTEGER NOT NULL)"
+            },
+            new String[]{
+                    // Older databases could hold duplicate active bookings; release all but the newest
+                    // so the unique index can be created.
+                    "UPDATE rooms SET available=available+(SELECT COUNT(*) FROM bookings b WHERE b.room_id=rooms.id AND b.status='active' AND b.id NOT IN (SELECT MAX(id) FROM bookings WHERE status='active' GROUP BY student_id))",
+                    "UPDATE bookings SET status='cancelled' WHERE status='active' AND id NOT IN (SELECT MAX(id) FROM bookings WHERE status='active' GROUP BY student_id)",
+                    // A student's active booking: book, cancel and myBooking. Also enforces one per student.
+                    "CREATE UNIQUE INDEX IF NOT EXISTS ux_bookings_active_student ON bookings(student_id) WHERE status='active'"
+            },
+            new String[]{
+                    // Admin booking list: keyset pages newest first, optionally filtered by status and/or room.
+                    "CREATE INDEX IF NOT EXISTS idx_bookings_status_id ON bookings(status, id)",
+                    "DROP INDEX IF EXISTS idx_bookings_room_id",
+                    "CREATE INDEX IF NOT EXISTS idx_bookings_room_status ON bookings(room_id, status, id)"
+            },
+            new String[]{
+                    // Sequence number of the last EventLog event committed with the data it describes.
+                    "CREATE TABLE event_log_state (id INTEGER PRIMARY KEY CHECK (id = 1), seq INTEGER NOT NULL)",
+                    "INSERT INTO event_log_state(id, seq) VALUES(1, 0)"
+            },
+            new String[]{
+                    // Seats held back when a room was created with available below capacity; the consistency
+                    // check expects capacity - held - active bookings. Existing rooms are baselined as they are.
+                    "ALTER TABLE rooms ADD COLUMN held INTEGER NOT NULL DEFAULT 0",
+                    "UPDATE rooms SET held=MAX(0, capacity-available-(SELECT COUNT(*) FROM bookings b WHERE b.room_id=rooms.id AND b.status='active'))"
             }
+    );
 
-            seed(c);
+    private static void migrate(Connection c) throws SQLException {
+        int version;
+        try (Statement st = c.createStatement(); ResultSet rs = st.executeQuery("PRAGMA user_version")) {
+            version = rs.next() ? rs.getInt(1) : 0;
+        }
+        if (version > MIGRATIONS.size()) {
+            System.err.println("Database schema version " + version + " is newer than this server (" + MIGRATIONS.size() + ")");
+            return;
+        }
+        while (version < MIGRATIONS.size()) {
+            int next = version + 1;
+            c.setAutoCommit(false);
+            try (Statement st = c.createStatement()) {
+                for (String sql : MIGRATIONS.get(version)) st.executeUpdate(sql);
+                st.executeUpdate("PRAGMA user_version=" + next);
+                c.commit();
+            } catch (SQLException e) {
+                c.rollback();
+                throw new SQLException("Schema migration " + next + " failed: " + e.getMessage(), e);
+            } finally { c.setAutoCommit(true); }
+            System.out.println("Applied schema migration " + next);
+            version = next;
         }
     }
 
+    // Queries on request paths, with their parameters left unbound. scanOk marks the ones that
+    // are expected to read a whole table: the startup room load, and the unfiltered admin page,
+    // which walks the primary key backwards and stops at the LIMIT.
+    private static final String ADMIN_BOOKINGS = "SELECT b.id,b.status,b.created_at,s.name,s.email,r.room_number FROM bookings b JOIN students s ON b.student_id=s.id JOIN rooms r ON b.room_id=r.id WHERE 1=1";
+    private record HotQuery(String name, boolean scanOk, String sql) {}
+
+    private static final List<HotQuery> HOT_QUERIES = List.of(
+            new HotQuery("login", false, "SELECT id,name,email,role,password FROM students WHERE email=? AND role=?"),
+            new HotQuery("book: take seat", false, "UPDATE rooms SET available=available-1 WHERE id=? AND available>0 RETURNING room_number,available"),
+            new HotQuery("cancel: find booking", false, "UPDATE bookings SET status='cancelled' WHERE student_id=? AND status='active' RETURNING room_id"),
+            new HotQuery("cancel: free seat", false, "UPDATE rooms SET available=available+1 WHERE id=? RETURNING room_number,available"),
+            new HotQuery("myBooking", false, "SELECT b.id,b.status,b.created_at,r.room_number FROM bookings b JOIN rooms r ON b.room_id=r.id WHERE b.student_id=? AND b.status='active'"),
+            new HotQuery("rooms: load", true, "SELECT id,room_number,capacity,available FROM rooms"),
+            new HotQuery("admin bookings: first page", true, ADMIN_BOOKINGS + " ORDER BY b.id DESC LIMIT ?"),
+            new HotQuery("admin bookings: next page", false, ADMIN_BOOKINGS + " AND b.id<? ORDER BY b.id DESC LIMIT ?"),
+            new HotQuery("admin bookings: by status", false, ADMIN_BOOKINGS + " AND b.id<? AND b.status=? ORDER BY b.id DESC LIMIT ?"),
+            new HotQuery("admin bookings: by room", false, ADMIN_BOOKINGS + " AND b.id<? AND b.status=? AND b.room_id=(SELECT id FROM rooms WHERE room_number=?) ORDER BY b.id DESC LIMIT ?"),
+            new HotQuery("session delete", false, "DELETE FROM sessions WHERE token=?")
+    );
+
+    // Prints the EXPLAIN QUERY PLAN of every hot query (all of them when verbose, otherwise only
+    // those that unexpectedly scan a table) and returns the number of unexpected scans.
+    public static int explainHotQueries(boolean verbose) throws SQLException {
+        int scans = 0;
+        try (Connection c = getReadConnection(); Statement st = c.createStatement()) {
+            for (HotQuery q : HOT_QUERIES) {
+                List<String> plan = new ArrayList<>();
+                boolean scan = false;
+                try (ResultSet rs = st.executeQuery("EXPLAIN QUERY PLAN " + q.sql())) {
+                    while (rs.next()) {
+                        String detail = rs.getString("detail");
+                        plan.add(detail);
+                        if (detail.startsWith("SCAN ") && !detail.contains(" USING ")) scan = true;
+                    }
+                }
+                boolean bad = scan && !q.scanOk();
+                if (bad) scans++;
+                if (verbose || bad) {
+                    System.out.println((bad ? "[SCAN] " : "[ok]   ") + q.name());
+                    for (String line : plan) System.out.println("         " + line);
+                }
+            }
+        }
+        return scans;
+    }
+
     private static void seed(Connection c) throws SQLException {
         // Admin user
         try (PreparedStatement ps = c.prepareStatement("INSERT OR IGNORE INTO students(name,email,password,role) VALUES(?,?,?,?)")) {
@@ -43,9 +175,36 @@ public class Database {
         ps.setInt(1, id); ps.setString(2, room); ps.setInt(3, capacity); ps.setInt(4, available); ps.executeUpdate();
     }
 
+    // The single writer connection; use for anything that modifies data.
     public static Connection getConnection() throws SQLException {
-        String url = "jdbc:sqlite:" + dbPath;
-        return DriverManager.getConnection(url);
+        return writer.acquire();
+    }
+
+    // A read-only connection; WAL lets these run alongside the writer.
+    public static Connection getReadConnection() throws SQLException {
+        return readers.acquire();
+    }
+
+    public static boolean isBusy(SQLException e) {
+        int code = e.getErrorCode() & 0xff;
+        String msg = String.valueOf(e.getMessage());
+        return code == 5 || code == 6 || msg.contains("SQLITE_BUSY") || msg.contains("SQLITE_LOCKED");
+    }
+
+    public static boolean isConstraint(SQLException e) {
+        return (e.getErrorCode() & 0xff) == 19 || String.valueOf(e.getMessage()).contains("SQLITE_CONSTRAINT");
+    }
+
+    public static Map<String, Object> poolStats() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        if (writer != null) m.put("writer", writer.stats());
+        if (readers != null) m.put("readers", readers.stats());
+        return m;
+    }
+
+    public static void close() {
+        if (writer != null) { writer.close(); writer = null; }
+        if (readers != null) { readers.close(); readers = null; }
     }
 }
 
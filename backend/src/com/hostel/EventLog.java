@@ -0,0 +1,421 @@
+package com.hostel;
+
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+// Append-only log of every change to room availability (room added, booked, cancelled), in a
+// memory-mapped file next to the database. SQLite stays the source of truth; the log is the audit
+// trail and lets the room state be rebuilt at startup from the latest snapshot plus the events after it.
+//
+// Events are appended inside the writer transaction that makes the change (BookingService.inTransaction),
+// and the sequence number of the last one is stored in event_log_state by the same commit. A rolled back
+// transaction takes its events back out. At startup, events beyond the committed sequence number were
+// never committed and are cut off. A log that is behind (deleted, or pages lost before they reached the
+// disk) is re-based: a RESET event followed by the rooms as the table has them.
+//
+// Record: int length, int crc32, then seq, time, type, roomId, studentId, bookingId, capacity, available
+// and the room number (ROOM events only). A zero length, a bad checksum or a gap in the sequence ends it.
+// Dirty pages are forced to disk every second; a snapshot of the rebuilt state is written every
+// snapshotEvery events and at shutdown.
+class EventLog {
+    enum Type { RESET, ROOM, BOOKED, CANCELLED } // stored as the ordinal: append only
+
+    record Event(long seq, long time, Type type, int roomId, int studentId, int bookingId, int capacity, int available, String roomNumber) {}
+
+    private static final int HEADER = 8;
+    private static final int FIXED = 8 + 8 + 1 + 5 * 4 + 2;
+    private static final int INITIAL_SIZE = 1 << 20;
+    private static final int SNAPSHOT_MAGIC = 0x48534e50;
+    private static final long FLUSH_INTERVAL_MS = 1000;
+    private static final int MARK_EVERY = 1024;
+
+    private static FileChannel channel;
+    private static MappedByteBuffer buf;
+    private static Path snapshotPath;
+    private static int snapshotEvery;
+    private static ScheduledExecutorService flusher;
+
+    // Guarded by the class lock. pos/nextSeq include the open transaction's events; committed* do not.
+    private static int pos;
+    private static long nextSeq = 1;
+    private static int committedPos;
+    private static long committedSeq;
+    private static int flushedPos;
+    private static int txStartPos = -1;
+    private static final List<Event> pending = new ArrayList<>();
+    // Position of every MARK_EVERY-th committed record, so events() can read the newest ones without
+    // starting at the front: records only link forward.
+    private static final List<Integer> marks = new ArrayList<>();
+    private static long committedRecords;
+    private static final Map<Integer, RoomCache.Room> rooms = new HashMap<>();
+    private static long eventsSinceSnapshot;
+
+    private static long appended, rolledBack, snapshots, replayed;
+    private static long rebuildMillis, lastSnapshotMillis;
+    private static String rebuiltFrom = "";
+
+    static boolean isOpen() { return channel != null; }
+
+    // Opens (or creates) the log and rebuilds the room state; call after Database.init.
+    static synchronized Collection<RoomCache.Room> open(Path logPath, Path snapshot, int snapshotEveryEvents) throws IOException, SQLException {
+        long t0 = System.nanoTime();
+        snapshotPath = snapshot;
+        snapshotEvery = snapshotEveryEvents;
+        if (logPath.getParent() != null) Files.createDirectories(logPath.getParent());
+        channel = FileChannel.open(logPath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        map((int) Math.max(INITIAL_SIZE, Math.min(channel.size(), Integer.MAX_VALUE)));
+
+        long dbSeq = committedSeqInDb();
+        List<long[]> index = scan(); // {seq, position} of every valid record
+        // Events past the committed sequence number belong to a transaction that never committed.
+        // -1 means a server ran without the log, so everything in it is history to keep.
+        int end = pos;
+        if (dbSeq >= 0) for (long[] r : index) if (r[0] > dbSeq) { end = (int) r[1]; break; }
+        if (end < pos) { clear(end, pos); pos = end; }
+        long lastSeq = 0;
+        for (long[] r : index) if (r[1] < pos) lastSeq = r[0];
+        nextSeq = lastSeq + 1;
+        committedPos = flushedPos = pos;
+        committedSeq = lastSeq;
+        marks.clear();
+        committedRecords = 0;
+        for (long[] r : index) if (r[1] < pos) mark((int) r[1]);
+
+        if (lastSeq == 0 || lastSeq != dbSeq) {
+            rebase(lastSeq == 0 ? "new log" : dbSeq < 0 ? "the last run did not keep the log" : "log is behind the database (" + lastSeq + " < " + dbSeq + ")");
+        } else {
+            replay(index);
+        }
+        rebuildMillis = (System.nanoTime() - t0) / 1_000_000;
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> { Thread t = new Thread(r, "event-log"); t.setDaemon(true); return t; });
+        flusher.scheduleWithFixedDelay(EventLog::maintainQuietly, FLUSH_INTERVAL_MS, FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        System.out.println("Event log: " + rooms.size() + " rooms rebuilt from " + rebuiltFrom + " in " + rebuildMillis + " ms");
+        return new ArrayList<>(rooms.values());
+    }
+
+    // Writes the state the table holds as a new starting point, then snapshots it.
+    private static void rebase(String reason) throws SQLException, IOException {
+        BookingService.inTransaction(c -> {
+            append(Type.RESET, 0, 0, 0, 0, 0, null);
+            try (PreparedStatement ps = c.prepareStatement("SELECT id,room_number,capacity,available FROM rooms")) {
+                ResultSet rs = ps.executeQuery();
+                while (rs.next()) append(Type.ROOM, rs.getInt(1), 0, 0, rs.getInt(3), rs.getInt(4), rs.getString(2));
+            }
+            return null;
+        });
+        rebuiltFrom = "the rooms table, " + reason;
+        snapshot();
+    }
+
+    private static void replay(List<long[]> index) throws IOException {
+        long fromSeq = 0;
+        int from = 0;
+        Snapshot snap = readSnapshot();
+        if (snap != null && snap.seq <= committedSeq && (snap.pos == committedPos || seqAt(index, snap.pos) == snap.seq + 1)) {
+            for (RoomCache.Room r : snap.rooms) rooms.put(r.id(), r);
+            fromSeq = snap.seq; from = snap.pos;
+        }
+        int n = 0;
+        for (int p = from; p < committedPos; ) {
+            Event e = read(p);
+            apply(e);
+            p += HEADER + recordLength(p);
+            n++;
+        }
+        replayed = n;
+        eventsSinceSnapshot = n;
+        rebuiltFrom = (fromSeq > 0 ? "snapshot at seq " + fromSeq + " + " : "") + n + " events";
+    }
+
+    // ===== Transaction hooks (BookingService.inTransaction, on the writer connection) =====
+
+    static synchronized void begin() {
+        if (channel == null) return;
+        txStartPos = pos;
+        pending.clear();
+    }
+
+    // Records the last sequence number in the transaction about to commit.
+    static synchronized void prepare(Connection c) throws SQLException {
+        if (channel == null || pending.isEmpty()) return;
+        try (PreparedStatement ps = c.prepareStatement("UPDATE event_log_state SET seq=? WHERE id=1")) {
+            ps.setLong(1, nextSeq - 1);
+            ps.executeUpdate();
+        }
+    }
+
+    static synchronized void commit() {
+        if (channel == null) return;
+        for (Event e : pending) apply(e);
+        eventsSinceSnapshot += pending.size();
+        pending.clear();
+        for (int p = committedPos; p < pos; p += HEADER + recordLength(p)) mark(p);
+        committedPos = pos;
+        committedSeq = nextSeq - 1;
+        txStartPos = -1;
+    }
+
+    static synchronized void rollback() {
+        if (channel == null || txStartPos < 0) return;
+        rolledBack += pending.size();
+        clear(txStartPos, pos);
+        pos = txStartPos;
+        nextSeq = committedSeq + 1;
+        pending.clear();
+        txStartPos = -1;
+    }
+
+    static void roomAdded(RoomCache.Room r) { append(Type.ROOM, r.id(), 0, 0, r.capacity(), r.available(), r.roomNumber()); }
+
+    static void booked(int bookingId, int studentId, int roomId) { append(Type.BOOKED, roomId, studentId, bookingId, 0, 0, null); }
+
+    static void cancelled(int bookingId, int studentId, int roomId) { append(Type.CANCELLED, roomId, studentId, bookingId, 0, 0, null); }
+
+    private static synchronized void append(Type type, int roomId, int studentId, int bookingId, int capacity, int available, String roomNumber) {
+        if (channel == null) return;
+        if (txStartPos < 0) throw new IllegalStateException("Event appended outside a transaction");
+        byte[] name = roomNumber == null ? new byte[0] : roomNumber.getBytes(StandardCharsets.UTF_8);
+        int len = FIXED + name.length;
+        ensure(pos + HEADER + len);
+        Event e = new Event(nextSeq++, System.currentTimeMillis(), type, roomId, studentId, bookingId, capacity, available, roomNumber);
+        int body = pos + HEADER;
+        buf.position(body);
+        buf.putLong(e.seq).putLong(e.time).put((byte) type.ordinal()).putInt(roomId).putInt(studentId).putInt(bookingId)
+                .putInt(capacity).putInt(available).putShort((short) name.length).put(name);
+        buf.putInt(pos + 4, crc(body, len));
+        buf.putInt(pos, len);
+        pos = body + len;
+        pending.add(e);
+        appended++;
+    }
+
+    private static void apply(Event e) {
+        switch (e.type()) {
+            case RESET: rooms.clear(); break;
+            case ROOM: rooms.put(e.roomId(), new RoomCache.Room(e.roomId(), e.roomNumber(), e.capacity(), e.available())); break;
+            case BOOKED: adjust(e.roomId(), -1); break;
+            case CANCELLED: adjust(e.roomId(), 1); break;
+        }
+    }
+
+    private static void adjust(int roomId, int delta) {
+        rooms.computeIfPresent(roomId, (id, r) -> new RoomCache.Room(id, r.roomNumber(), r.capacity(), r.available() + delta));
+    }
+
+    // Availability per room as the log has it.
+    static synchronized Map<Integer, RoomCache.Room> rooms() { return new HashMap<>(rooms); }
+
+    private static void mark(int p) {
+        if (committedRecords++ % MARK_EVERY == 0) marks.add(p);
+    }
+
+    // Committed events, oldest first, optionally only those touching one room; at most limit of the newest.
+    // Reads back one stretch between marks at a time, newest first, until limit events are found.
+    static List<Event> events(Integer roomId, int limit) {
+        int end, stretches;
+        synchronized (EventLog.class) { end = committedPos; stretches = marks.size(); }
+        ArrayDeque<Event> out = new ArrayDeque<>();
+        for (int i = stretches - 1; i >= 0 && out.size() < limit; i--) {
+            int from;
+            synchronized (EventLog.class) { from = marks.get(i); }
+            List<Event> found = new ArrayList<>();
+            for (int p = from; p < end; p += HEADER + recordLength(p)) {
+                Event e = read(p);
+                if (roomId == null || e.roomId() == roomId || e.type() == Type.RESET) found.add(e);
+            }
+            for (int j = found.size() - 1; j >= 0 && out.size() < limit; j--) out.addFirst(found.get(j));
+            end = from;
+        }
+        return new ArrayList<>(out);
+    }
+
+    // ===== Reading =====
+
+    private static List<long[]> scan() {
+        List<long[]> index = new ArrayList<>();
+        int p = 0;
+        long prev = 0;
+        while (p + HEADER <= buf.capacity()) {
+            int len = buf.getInt(p);
+            if (len < FIXED || p + HEADER + len > buf.capacity() || buf.getInt(p + 4) != crc(p + HEADER, len)) break;
+            long seq = buf.getLong(p + HEADER);
+            if (prev != 0 && seq != prev + 1) break;
+            index.add(new long[]{seq, p});
+            prev = seq;
+            p += HEADER + len;
+        }
+        pos = p;
+        return index;
+    }
+
+    private static long seqAt(List<long[]> index, int position) {
+        for (long[] r : index) if (r[1] == position) return r[0];
+        return -1;
+    }
+
+    private static int recordLength(int p) { return buf.getInt(p); }
+
+    private static Event read(int p) {
+        MappedByteBuffer b = buf;
+        int at = p + HEADER;
+        long seq = b.getLong(at), time = b.getLong(at + 8);
+        Type type = Type.values()[b.get(at + 16)];
+        int roomId = b.getInt(at + 17), studentId = b.getInt(at + 21), bookingId = b.getInt(at + 25);
+        int capacity = b.getInt(at + 29), available = b.getInt(at + 33);
+        int nameLen = b.getShort(at + 37);
+        String name = null;
+        if (nameLen > 0) {
+            byte[] bytes = new byte[nameLen];
+            b.get(at + FIXED, bytes);
+            name = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return new Event(seq, time, type, roomId, studentId, bookingId, capacity, available, name);
+    }
+
+    private static int crc(int from, int len) {
+        CRC32 crc = new CRC32();
+        crc.update(buf.slice(from, len));
+        return (int) crc.getValue();
+    }
+
+    // ===== File management =====
+
+    private static void map(int size) throws IOException {
+        buf = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+    }
+
+    // Grows the mapping by doubling; a mapping is limited to 2 GiB.
+    private static void ensure(int needed) {
+        if (needed <= buf.capacity()) return;
+        long size = buf.capacity();
+        while (size < needed) size *= 2;
+        try { map((int) Math.min(size, Integer.MAX_VALUE)); }
+        catch (IOException e) { throw new UncheckedIOException("Cannot grow event log", e); }
+        if (needed > buf.capacity()) throw new IllegalStateException("Event log is full (2 GiB)");
+    }
+
+    private static void clear(int from, int to) {
+        for (int p = from; p < to; p++) buf.put(p, (byte) 0);
+    }
+
+    private static void maintainQuietly() {
+        try {
+            flush();
+            boolean due;
+            synchronized (EventLog.class) { due = eventsSinceSnapshot >= snapshotEvery; }
+            if (due) snapshot();
+        } catch (Exception e) {
+            System.err.println("Event log maintenance failed: " + e);
+        }
+    }
+
+    private static void flush() {
+        MappedByteBuffer b; int from, to;
+        synchronized (EventLog.class) { b = buf; from = flushedPos; to = committedPos; }
+        if (to <= from) return;
+        b.force(from, to - from);
+        synchronized (EventLog.class) { if (buf == b) flushedPos = Math.max(flushedPos, to); }
+    }
+
+    // ===== Snapshots =====
+
+    private record Snapshot(long seq, int pos, List<RoomCache.Room> rooms) {}
+
+    // Writes the committed state to a temporary file and renames it over the previous snapshot.
+    static void snapshot() throws IOException {
+        long seq; int at; List<RoomCache.Room> state;
+        synchronized (EventLog.class) {
+            if (channel == null) return;
+            seq = committedSeq; at = committedPos; state = new ArrayList<>(rooms.values());
+            eventsSinceSnapshot = 0;
+        }
+        flush();
+        long t0 = System.nanoTime();
+        Path tmp = snapshotPath.resolveSibling(snapshotPath.getFileName() + ".tmp");
+        CheckedOutputStream checked = new CheckedOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)), new CRC32());
+        try (DataOutputStream out = new DataOutputStream(checked)) {
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeLong(seq);
+            out.writeInt(at);
+            out.writeInt(state.size());
+            for (RoomCache.Room r : state) { out.writeInt(r.id()); out.writeUTF(r.roomNumber()); out.writeInt(r.capacity()); out.writeInt(r.available()); }
+            out.writeLong(checked.getChecksum().getValue());
+        }
+        Files.move(tmp, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        synchronized (EventLog.class) { snapshots++; lastSnapshotMillis = (System.nanoTime() - t0) / 1_000_000; }
+    }
+
+    private static Snapshot readSnapshot() {
+        if (!Files.isRegularFile(snapshotPath)) return null;
+        CheckedInputStream checked;
+        try (DataInputStream in = new DataInputStream(checked = new CheckedInputStream(new BufferedInputStream(Files.newInputStream(snapshotPath)), new CRC32()))) {
+            if (in.readInt() != SNAPSHOT_MAGIC) return null;
+            long seq = in.readLong();
+            int at = in.readInt();
+            int n = in.readInt();
+            List<RoomCache.Room> state = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) state.add(new RoomCache.Room(in.readInt(), in.readUTF(), in.readInt(), in.readInt()));
+            long expected = checked.getChecksum().getValue();
+            return in.readLong() == expected ? new Snapshot(seq, at, state) : null;
+        } catch (IOException e) {
+            System.err.println("Ignoring unreadable event log snapshot: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static long committedSeqInDb() throws SQLException {
+        try (Connection c = Database.getReadConnection();
+             PreparedStatement ps = c.prepareStatement("SELECT seq FROM event_log_state WHERE id=1")) {
+            ResultSet rs = ps.executeQuery();
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    // Marks the log as behind, for a server that runs without it: the next one to open it re-bases.
+    static void invalidate() throws SQLException {
+        BookingService.inTransaction(c -> {
+            try (PreparedStatement ps = c.prepareStatement("UPDATE event_log_state SET seq=-1 WHERE id=1")) { ps.executeUpdate(); }
+            return null;
+        });
+    }
+
+    static synchronized Map<String, Object> stats() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("seq", committedSeq);
+        m.put("bytes", committedPos);
+        m.put("appended", appended);
+        m.put("rolledBack", rolledBack);
+        m.put("replayed", replayed);
+        m.put("rebuildMillis", rebuildMillis);
+        m.put("snapshots", snapshots);
+        m.put("lastSnapshotMillis", lastSnapshotMillis);
+        m.put("eventsSinceSnapshot", eventsSinceSnapshot);
+        return m;
+    }
+
+    static void close() {
+        if (channel == null) return;
+        flusher.shutdown();
+        try { flusher.awaitTermination(5, TimeUnit.SECONDS); } catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+        try {
+            snapshot();
+            synchronized (EventLog.class) { channel.close(); channel = null; buf = null; }
+        } catch (IOException e) {
+            System.err.println("Closing event log failed: " + e);
+        }
+    }
+}
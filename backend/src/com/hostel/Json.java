@@ -1,66 +1,276 @@
 package com.hostel;
 
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 
 public class Json {
-    // Minimal JSON parser/stringifier for simple objects/arrays with strings/numbers/booleans/null
+    // Minimal JSON parser/stringifier for simple objects/arrays with strings/numbers/booleans/null.
+    // Writing goes straight to UTF-8 bytes through Writer; parsing works on UTF-8 bytes.
+    public static final int MAX_INPUT_BYTES = 1 << 20;
+    private static final int MAX_DEPTH = 64;
+
+    public static class JsonException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        public JsonException(String m) { super(m); }
+    }
+
     public static Map<String, Object> parse(String json) {
-        return new Parser(json).parseObject();
+        return parse(json.getBytes(StandardCharsets.UTF_8));
     }
 
-    public static String stringify(Object value) {
-        StringBuilder sb = new StringBuilder();
-        writeValue(sb, value);
-        return sb.toString();
+    public static Map<String, Object> parse(byte[] json) {
+        Parser p = new Parser(json, json.length, MAX_INPUT_BYTES);
+        Map<String, Object> m = p.parseObject();
+        p.expectEnd();
+        return m;
+    }
+
+    // Any JSON value at the top level (object, array, string, ...).
+    public static Object parseValue(byte[] json) {
+        return parseValue(json, MAX_INPUT_BYTES);
+    }
+
+    // As above, for callers that accept documents larger than MAX_INPUT_BYTES (bulk imports).
+    public static Object parseValue(byte[] json, int maxBytes) {
+        Parser p = new Parser(json, json.length, maxBytes);
+        Object v = p.parseValue();
+        p.expectEnd();
+        return v;
     }
 
-    private static void writeValue(StringBuilder sb, Object v) {
-        if (v == null) sb.append("null");
-        else if (v instanceof String) sb.append('"').append(escape((String) v)).append('"');
-        else if (v instanceof Number || v instanceof Boolean) sb.append(String.valueOf(v));
-        else if (v instanceof Map) {
-            sb.append('{'); boolean first = true;
-            for (Object e : ((Map<?, ?>) v).entrySet()) {
-                Map.Entry<?, ?> me = (Map.Entry<?, ?>) e;
-                if (!first) sb.append(','); first = false;
-                sb.append('"').append(escape(String.valueOf(me.getKey()))).append('"').append(':');
-                writeValue(sb, me.getValue());
+    // Reads a request body, refusing anything larger than maxBytes.
+    public static byte[] readBounded(InputStream in, int maxBytes) throws IOException {
+        byte[] buf = new byte[Math.min(maxBytes, 8192)];
+        int n = 0;
+        while (true) {
+            if (n == buf.length) {
+                if (n >= maxBytes) { if (in.read() < 0) break; throw new JsonException("Request body exceeds " + maxBytes + " bytes"); }
+                buf = Arrays.copyOf(buf, Math.min(maxBytes, n * 2));
             }
-            sb.append('}');
-        } else if (v instanceof Iterable) {
-            sb.append('['); boolean first = true;
-            for (Object it : (Iterable<?>) v) { if (!first) sb.append(','); first = false; writeValue(sb, it); }
-            sb.append(']');
-        } else {
-            sb.append('"').append(escape(String.valueOf(v))).append('"');
+            int r = in.read(buf, n, buf.length - n);
+            if (r < 0) break;
+            n += r;
         }
+        return n == buf.length ? buf : Arrays.copyOf(buf, n);
     }
 
-    private static String escape(String s) { return s.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n"); }
+    public static String stringify(Object value) {
+        return new String(toBytes(value), StandardCharsets.UTF_8);
+    }
+
+    public static byte[] toBytes(Object value) {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream(256);
+        try (Writer w = new Writer(bos)) { w.value(value); }
+        catch (IOException e) { throw new UncheckedIOException(e); }
+        return bos.toByteArray();
+    }
+
+    // Buffered UTF-8 JSON writer. value(Object) writes a whole tree; beginObject/name/value/endObject
+    // let callers stream large documents row by row without building them in memory first.
+    public static final class Writer implements Closeable, Flushable {
+        private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+        private final OutputStream out;
+        private final byte[] buf = new byte[4096];
+        private int pos;
+        // first[depth] is true until the first element of the current container has been written.
+        private final boolean[] first = new boolean[MAX_DEPTH + 1];
+        private int depth;
+        private boolean afterName;
+
+        public Writer(OutputStream out) { this.out = out; }
+
+        public Writer beginObject() throws IOException { open('{'); return this; }
+        public Writer endObject() throws IOException { close('}'); return this; }
+        public Writer beginArray() throws IOException { open('['); return this; }
+        public Writer endArray() throws IOException { close(']'); return this; }
+
+        public Writer name(String name) throws IOException {
+            if (!first[depth]) put((byte) ',');
+            first[depth] = false;
+            string(name);
+            put((byte) ':');
+            afterName = true;
+            return this;
+        }
+
+        public Writer value(Object v) throws IOException {
+            if (v instanceof Map) {
+                beginObject();
+                for (Map.Entry<?, ?> e : ((Map<?, ?>) v).entrySet()) { name(String.valueOf(e.getKey())); value(e.getValue()); }
+                return endObject();
+            }
+            if (v instanceof Iterable) {
+                beginArray();
+                for (Object it : (Iterable<?>) v) value(it);
+                return endArray();
+            }
+            separator();
+            if (v == null) raw("null");
+            else if (v instanceof String) string((String) v);
+            else if (v instanceof Integer || v instanceof Long || v instanceof Short || v instanceof Byte) number(((Number) v).longValue());
+            else if (v instanceof Double || v instanceof Float) { double d = ((Number) v).doubleValue(); raw(Double.isFinite(d) ? String.valueOf(v) : "null"); }
+            else if (v instanceof Number || v instanceof Boolean) raw(String.valueOf(v));
+            else string(String.valueOf(v));
+            return this;
+        }
+
+        public Writer value(long n) throws IOException { separator(); number(n); return this; }
+
+        private void open(char c) throws IOException {
+            separator();
+            if (depth == MAX_DEPTH) throw new JsonException("Nesting deeper than " + MAX_DEPTH);
+            put((byte) c);
+            first[++depth] = true;
+        }
+
+        private void close(char c) throws IOException {
+            put((byte) c);
+            depth--;
+        }
+
+        private void separator() throws IOException {
+            if (afterName) { afterName = false; return; }
+            if (depth > 0) {
+                if (!first[depth]) put((byte) ',');
+                first[depth] = false;
+            }
+        }
+
+        private void raw(String s) throws IOException {
+            for (int i = 0; i < s.length(); i++) put((byte) s.charAt(i));
+        }
+
+        private void number(long n) throws IOException {
+            if (n == Long.MIN_VALUE) { raw("-9223372036854775808"); return; }
+            if (pos + 20 > buf.length) drain();
+            if (n < 0) { buf[pos++] = '-'; n = -n; }
+            int start = pos;
+            do { buf[pos++] = (byte) ('0' + n % 10); n /= 10; } while (n != 0);
+            for (int i = start, j = pos - 1; i < j; i++, j--) { byte t = buf[i]; buf[i] = buf[j]; buf[j] = t; }
+        }
+
+        // Single pass: ASCII is copied as is, quotes/backslashes/control characters are escaped,
+        // everything else is encoded to UTF-8.
+        private void string(String s) throws IOException {
+            int len = s.length();
+            // Worst case is 6 bytes per char (a \\u escape); reserve it up front so the loop needs no bounds checks.
+            if (pos + len * 6 + 2 > buf.length) drain();
+            if (len * 6 + 2 > buf.length) { longString(s); return; }
+            byte[] b = buf; int p = pos;
+            b[p++] = '"';
+            for (int i = 0; i < len; i++) {
+                char c = s.charAt(i);
+                if (c >= 0x20 && c < 0x80 && c != '"' && c != '\\') { b[p++] = (byte) c; continue; }
+                p = encode(s, i, c, p);
+                if (Character.isHighSurrogate(c) && i + 1 < len && Character.isLowSurrogate(s.charAt(i + 1))) i++;
+            }
+            b[p++] = '"';
+            pos = p;
+        }
+
+        // Strings too long for the buffer are written in slices.
+        private void longString(String s) throws IOException {
+            put((byte) '"');
+            int len = s.length();
+            for (int i = 0; i < len; i++) {
+                if (pos + 6 > buf.length) drain();
+                char c = s.charAt(i);
+                pos = encode(s, i, c, pos);
+                if (Character.isHighSurrogate(c) && i + 1 < len && Character.isLowSurrogate(s.charAt(i + 1))) i++;
+            }
+            put((byte) '"');
+        }
+
+        // Escapes or UTF-8 encodes one char at p and returns the new position. A surrogate pair is
+        // written as one 4-byte sequence (the caller skips the low half); an unpaired surrogate becomes U+FFFD.
+        private int encode(String s, int i, char c, int p) {
+            byte[] b = buf;
+            if (c >= 0x20 && c < 0x80 && c != '"' && c != '\\') { b[p++] = (byte) c; return p; }
+            if (c < 0x80) {
+                b[p++] = '\\';
+                switch (c) {
+                    case '"': b[p++] = '"'; break;
+                    case '\\': b[p++] = '\\'; break;
+                    case '\n': b[p++] = 'n'; break;
+                    case '\r': b[p++] = 'r'; break;
+                    case '\t': b[p++] = 't'; break;
+                    case '\b': b[p++] = 'b'; break;
+                    case '\f': b[p++] = 'f'; break;
+                    default:
+                        b[p++] = 'u'; b[p++] = '0'; b[p++] = '0';
+                        b[p++] = HEX[c >> 4]; b[p++] = HEX[c & 0xf];
+                }
+            } else if (c < 0x800) {
+                b[p++] = (byte) (0xc0 | (c >> 6));
+                b[p++] = (byte) (0x80 | (c & 0x3f));
+            } else if (Character.isHighSurrogate(c) && i + 1 < s.length() && Character.isLowSurrogate(s.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, s.charAt(i + 1));
+                b[p++] = (byte) (0xf0 | (cp >> 18));
+                b[p++] = (byte) (0x80 | ((cp >> 12) & 0x3f));
+                b[p++] = (byte) (0x80 | ((cp >> 6) & 0x3f));
+                b[p++] = (byte) (0x80 | (cp & 0x3f));
+            } else {
+                if (Character.isSurrogate(c)) c = '\uFFFD';
+                b[p++] = (byte) (0xe0 | (c >> 12));
+                b[p++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                b[p++] = (byte) (0x80 | (c & 0x3f));
+            }
+            return p;
+        }
+
+        private void put(byte b) throws IOException {
+            if (pos == buf.length) drain();
+            buf[pos++] = b;
+        }
+
+        private void drain() throws IOException {
+            out.write(buf, 0, pos);
+            pos = 0;
+        }
+
+        @Override public void flush() throws IOException { drain(); out.flush(); }
+
+        @Override public void close() throws IOException {
+            try { drain(); } finally { out.close(); }
+        }
+    }
 
     private static class Parser {
-        private final String s; int i = 0;
-        Parser(String s) { this.s = s.trim(); }
+        private final byte[] b; private final int end; int i = 0; int depth = 0;
+        Parser(byte[] b, int len, int maxBytes) {
+            if (len > maxBytes) throw new JsonException("JSON input exceeds " + maxBytes + " bytes");
+            this.b = b; this.end = len;
+        }
         Map<String, Object> parseObject() {
-            skipWs(); expect('{'); Map<String, Object> m = new LinkedHashMap<>(); skipWs();
-            if (peek() == '}') { i++; return m; }
+            skipWs(); expect('{'); enter(); Map<String, Object> m = new LinkedHashMap<>(); skipWs();
+            if (peek() == '}') { i++; depth--; return m; }
             while (true) {
                 skipWs(); String key = parseString(); skipWs(); expect(':'); skipWs(); Object val = parseValue(); m.put(key, val); skipWs();
-                char c = peek(); if (c == ',') { i++; continue; } if (c == '}') { i++; break; } throw err("Expected , or }");
+                int c = peek(); if (c == ',') { i++; continue; } if (c == '}') { i++; break; } throw err("Expected , or }");
             }
+            depth--;
             return m;
         }
         List<Object> parseArray() {
-            skipWs(); expect('['); List<Object> a = new ArrayList<>(); skipWs();
-            if (peek() == ']') { i++; return a; }
+            skipWs(); expect('['); enter(); List<Object> a = new ArrayList<>(); skipWs();
+            if (peek() == ']') { i++; depth--; return a; }
             while (true) {
                 skipWs(); a.add(parseValue()); skipWs();
-                char c = peek(); if (c == ',') { i++; continue; } if (c == ']') { i++; break; } throw err("Expected , or ]");
+                int c = peek(); if (c == ',') { i++; continue; } if (c == ']') { i++; break; } throw err("Expected , or ]");
             }
+            depth--;
             return a;
         }
         Object parseValue() {
-            skipWs(); char c = peek();
+            skipWs(); int c = peek();
             if (c == '"') return parseString();
             if (c == '{') return parseObject();
             if (c == '[') return parseArray();
@@ -70,27 +280,84 @@ public class Json {
             return parseNumber();
         }
         String parseString() {
-            expect('"'); StringBuilder sb = new StringBuilder();
-            while (i < s.length()) { char c = s.charAt(i++); if (c == '"') break; if (c == '\\') { char n = s.charAt(i++); if (n == 'n') sb.append('\n'); else sb.append(n); } else sb.append(c); }
-            return sb.toString();
+            expect('"');
+            int start = i;
+            // Fast path: no escapes, so the bytes can be decoded in one go.
+            while (i < end && b[i] != '"' && b[i] != '\\') i++;
+            if (i >= end) throw err("Unterminated string");
+            if (b[i] == '"') { i++; return new String(b, start, i - 1 - start, StandardCharsets.UTF_8); }
+            StringBuilder sb = new StringBuilder(new String(b, start, i - start, StandardCharsets.UTF_8));
+            while (true) {
+                if (i >= end) throw err("Unterminated string");
+                byte c = b[i];
+                if (c == '"') { i++; return sb.toString(); }
+                if (c == '\\') {
+                    if (i + 1 >= end) throw err("Unterminated string");
+                    byte n = b[i + 1]; i += 2;
+                    switch (n) {
+                        case 'n': sb.append('\n'); break;
+                        case 'r': sb.append('\r'); break;
+                        case 't': sb.append('\t'); break;
+                        case 'b': sb.append('\b'); break;
+                        case 'f': sb.append('\f'); break;
+                        case 'u':
+                            if (i + 4 > end) throw err("Bad unicode escape");
+                            sb.append((char) hex4()); break;
+                        default: sb.append((char) n);
+                    }
+                } else {
+                    int s = i;
+                    while (i < end && b[i] != '"' && b[i] != '\\') i++;
+                    sb.append(new String(b, s, i - s, StandardCharsets.UTF_8));
+                }
+            }
         }
+        private int hex4() {
+            int v = 0;
+            for (int k = 0; k < 4; k++) {
+                int d = Character.digit(b[i++], 16);
+                if (d < 0) throw err("Bad unicode escape");
+                v = (v << 4) | d;
+            }
+            return v;
+        }
+        // -?(0|[1-9][0-9]*)(.[0-9]+)?([eE][+-]?[0-9]+)? as in the JSON grammar; anything else is a JsonException.
         Number parseNumber() {
-            int start = i; while (i < s.length()) { char c = s.charAt(i); if ((c >= '0' && c <= '9') || c == '-' || c == '+' || c == '.' || c == 'e' || c == 'E') i++; else break; }
-            String num = s.substring(start, i);
-            if (num.contains(".") || num.contains("e") || num.contains("E")) return Double.parseDouble(num);
-            return Long.parseLong(num);
+            int start = i;
+            boolean neg = i < end && b[i] == '-';
+            if (neg) i++;
+            int intStart = i;
+            if (i == start && (i >= end || !isDigit(b[i]))) throw err("Unexpected character");
+            int digits = digits();
+            if (digits == 0 || digits > 1 && b[intStart] == '0') throw err("Bad number");
+            boolean fraction = false;
+            if (i < end && b[i] == '.') { i++; fraction = true; if (digits() == 0) throw err("Bad number"); }
+            if (i < end && (b[i] == 'e' || b[i] == 'E')) {
+                i++; fraction = true;
+                if (i < end && (b[i] == '+' || b[i] == '-')) i++;
+                if (digits() == 0) throw err("Bad number");
+            }
+            // Up to 18 digits always fit in a long, so they are accumulated without allocating.
+            if (fraction || digits > 18) {
+                try { return Double.parseDouble(new String(b, start, i - start, StandardCharsets.US_ASCII)); }
+                catch (NumberFormatException e) { throw err("Bad number"); }
+            }
+            long v = 0;
+            for (int k = intStart; k < i; k++) v = v * 10 + (b[k] - '0');
+            return neg ? -v : v;
         }
-        void skipWs() { while (i < s.length()) { char c = s.charAt(i); if (c == ' ' || c == '\n' || c == '\r' || c == '\t') i++; else break; } }
+        private int digits() { int s = i; while (i < end && isDigit(b[i])) i++; return i - s; }
+        private static boolean isDigit(byte c) { return c >= '0' && c <= '9'; }
+        void enter() { if (++depth > MAX_DEPTH) throw err("Nesting too deep"); }
+        void skipWs() { while (i < end) { byte c = b[i]; if (c == ' ' || c == '\n' || c == '\r' || c == '\t') i++; else break; } }
         void expect(char c) { if (peek() != c) throw err("Expected '" + c + "'"); i++; }
-        boolean startsWith(String t) { return s.startsWith(t, i); }
-        char peek() { if (i >= s.length()) throw err("Unexpected end"); return s.charAt(i); }
-        RuntimeException err(String m) { return new RuntimeException(m + " at pos " + i); }
+        void expectEnd() { skipWs(); if (i < end) throw err("Unexpected trailing data"); }
+        boolean startsWith(String t) {
+            if (i + t.length() > end) return false;
+            for (int k = 0; k < t.length(); k++) if (b[i + k] != t.charAt(k)) return false;
+            return true;
+        }
+        int peek() { if (i >= end) throw err("Unexpected end"); return b[i]; }
+        JsonException err(String m) { return new JsonException(m + " at pos " + i); }
     }
 }
-
-
-
-
-
-
-
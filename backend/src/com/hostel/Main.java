@@ -8,32 +8,148 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.InetSocketAddress;
+import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.sql.*;
-import java.time.LocalDateTime;
+import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
 
 public class Main {
-    private static final int PORT = 8080;
-    private static final String DB_PATH = "data/hostel.db";
-    private static final Map<String, Session> tokenToSession = new HashMap<>();
+    private static final int DEFAULT_PAGE = 50;
+    private static final int MAX_PAGE = 500;
+    private static final int MAX_IMPORT_BYTES = 4 * 1024 * 1024;
+    private static final long BOOK_WAIT_MS = 2000;
+    private static final int MAX_PREFERENCES = 10;
+    private static final long CREDENTIAL_TTL_MS = 10 * 60_000;
+    // A POST /api/book with an Idempotency-Key is answered with the same result for this long;
+    // an identical one without a key (a double click) only shortly after the first was decided.
+    private static final long IDEMPOTENCY_TTL_MS = 10 * 60_000;
+    private static final long DUPLICATE_WINDOW_MS = 1000;
+    private static final int MAX_IDEMPOTENCY_KEY = 255;
+    private static SessionStore sessions;
+    private static RoomStream roomStream;
+    private static BookingQueue bookingQueue;
+    private static CredentialCache credentials;
+    private static StaticFiles staticFiles;
+    private static Map<String, RateLimiter.Limit> rateLimits;
+    private static final Map<String, RateLimiter> rateLimiters = new LinkedHashMap<>();
+    private static RateLimiter loginLimiter;
+    private static ServerConfig serverConfig;
+    private static final RequestCoalescer<BookingQueue.Ticket> bookRequests = new RequestCoalescer<>();
 
     public static void main(String[] args) throws Exception {
-        Database.init(DB_PATH);
-        HttpServer server = HttpServer.create(new InetSocketAddress(PORT), 0);
-
-        server.createContext("/api/register", Main::handleRegister);
-        server.createContext("/api/login", Main::handleLogin);
-        server.createContext("/api/logout", Main::handleLogout);
-        server.createContext("/api/rooms", Main::handleRooms);
-        server.createContext("/api/book", Main::handleBook);
-        server.createContext("/api/myBooking", Main::handleMyBooking);
-        server.createContext("/api/admin/rooms", Main::handleAdminRooms);
-        server.createContext("/api/admin/bookings", Main::handleAdminBookings);
-
-        server.setExecutor(null);
-        System.out.println("Hostel server running on http://localhost:" + PORT);
+        ServerConfig config = ServerConfig.parse(args);
+        HttpServer server = start(config);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> stop(server)));
+        System.out.println("Hostel server running on http://localhost:" + config.port + " (" + config + ")");
+    }
+
+    // Drains the booking queue and flushes sessions before the database is closed.
+    static void stop(HttpServer server) {
+        server.stop(1); RequestExecutor.shutdown(); Passwords.shutdown(); bookingQueue.stop(); roomStream.stop(); sessions.stop(); EventLog.close(); Database.close();
+    }
+
+    static HttpServer start(ServerConfig config) throws Exception {
+        Database.init(config.dbPath, config.readers);
+        // Always checked; the full plan listing only with --explain-queries.
+        int scans = Database.explainHotQueries(config.explainQueries);
+        if (scans > 0) System.err.println("Warning: " + scans + " hot quer" + (scans == 1 ? "y scans" : "ies scan") + " a table; see the plans above");
+        sessions = new SessionStore(config.sessionTtlMinutes * 60_000L, config.sessionIdleMinutes * 60_000L, config.maxSessions, config.persistSessions);
+        sessions.start();
+        Path eventLog = config.eventLogPath();
+        if (eventLog != null) {
+            RoomCache.load(EventLog.open(eventLog, eventLog.resolveSibling(eventLog.getFileName() + ".snapshot"), config.snapshotEvery));
+        } else {
+            EventLog.invalidate();
+            RoomCache.load();
+        }
+        if (config.checkConsistency) printConsistency(Consistency.check());
+        RoomIndex.build();
+        roomStream = new RoomStream(config.maxStreamClients, 2);
+        RoomCache.addListener(roomStream::publish);
+        bookingQueue = new BookingQueue(config.bookingQueue, config.bookingBatch);
+        bookingQueue.start();
+        Passwords.init(config.hashThreads, config.hashQueue, config.hashIterations);
+        if (config.credentialCache) credentials = new CredentialCache(CREDENTIAL_TTL_MS, config.maxSessions);
+        // The JDK server writes headers and body separately; without TCP_NODELAY every response with a
+        // body stalls on the client's delayed ACK (about 40 ms). Read when the server class loads.
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) System.setProperty("sun.net.httpserver.nodelay", "true");
+        HttpServer server = HttpServer.create(new InetSocketAddress(config.port), 0);
+        serverConfig = config;
+        rateLimits = config.rateLimitsByPath();
+        rateLimiters.clear();
+        RateLimiter.Limit perAccount = rateLimits.get(ServerConfig.LOGIN_ACCOUNT_LIMIT);
+        loginLimiter = perAccount == null ? null : new RateLimiter(perAccount);
+        if (loginLimiter != null) rateLimiters.put(ServerConfig.LOGIN_ACCOUNT_LIMIT, loginLimiter);
+
+        route(server, "/api/register", Main::handleRegister);
+        route(server, "/api/login", Main::handleLogin);
+        route(server, "/api/logout", Main::handleLogout);
+        route(server, "/api/rooms", Main::handleRooms);
+        route(server, "/api/rooms/stream", Main::handleRoomStream);
+        route(server, "/api/rooms/search", Main::handleRoomSearch);
+        route(server, "/api/book", Main::handleBook);
+        route(server, "/api/myBooking", Main::handleMyBooking);
+        route(server, "/api/admin/rooms", Main::handleAdminRooms);
+        route(server, "/api/admin/rooms/import", Main::handleAdminRoomImport);
+        route(server, "/api/admin/bookings", Main::handleAdminBookings);
+        route(server, "/api/admin/allocate", Main::handleAdminAllocate);
+        route(server, "/api/admin/metrics", Main::handleAdminMetrics);
+        route(server, "/api/admin/consistency", Main::handleAdminConsistency);
+        route(server, "/api/admin/events", Main::handleAdminEvents);
+        // Everything outside /api: the frontend, unless --static=none or the directory is missing.
+        Path frontend = Paths.get(config.staticDir);
+        if (!config.staticDir.equals("none") && Files.isDirectory(frontend)) {
+            staticFiles = StaticFiles.load(frontend);
+            route(server, "/", staticFiles::handle);
+            System.out.println("Serving " + frontend.toAbsolutePath().normalize() + " at /");
+        }
+
+        server.setExecutor(RequestExecutor.create(config));
         server.start();
+        return server;
+    }
+
+    // Every context goes through here so overload shedding, rate limits and metrics apply to all endpoints.
+    private static void route(HttpServer server, String path, HttpHandler handler) {
+        Metrics.Endpoint metrics = Metrics.endpoint(path);
+        RateLimiter.Limit limit = rateLimits.containsKey(path) ? rateLimits.get(path) : rateLimits.get("*");
+        RateLimiter limiter = limit == null ? null : new RateLimiter(limit);
+        if (limiter != null) rateLimiters.put(path, limiter);
+        server.createContext(path, ex -> {
+            long start = System.nanoTime();
+            Metrics.begin(metrics, start);
+            try {
+                if (RequestExecutor.isShedding()) { setCors(ex); sendBusy(ex); return; }
+                if (limiter != null && !"OPTIONS".equalsIgnoreCase(ex.getRequestMethod())) {
+                    long wait = limiter.acquire(clientKey(ex));
+                    if (wait > 0) { setCors(ex); sendLimited(ex, wait); return; }
+                }
+                handler.handle(ex);
+            } finally {
+                metrics.end(ex.getResponseCode(), start);
+            }
+        });
+    }
+
+    // Signed-in clients are limited per user, so students behind one NAT address do not share a budget
+    // and new tokens do not reset it; anyone else (login, register, a made-up token) per IP address.
+    private static String clientKey(HttpExchange ex) {
+        Session s = sessions.get(ex.getRequestHeaders().getFirst("X-Auth-Token"));
+        return s != null ? "user:" + s.userId() : "ip:" + clientAddress(ex);
+    }
+
+    // The remote address, or the client's behind a trusted proxy (--trusted-proxies).
+    private static String clientAddress(HttpExchange ex) {
+        return serverConfig.clientAddress(ex.getRemoteAddress().getAddress().getHostAddress(), ex.getRequestHeaders().get("X-Forwarded-For"));
     }
 
     // ===== Handlers =====
@@ -41,55 +157,126 @@ public class Main {
         setCors(ex);
         if ("OPTIONS".equalsIgnoreCase(ex.getRequestMethod())) { emptyOk(ex); return; }
         if (!"POST".equalsIgnoreCase(ex.getRequestMethod())) { sendJson(ex, 405, jsonMsg("Only POST")); return; }
-        Map<String, Object> body = readJson(ex);
+        Map<String, Object> body = readJson(ex); if (body == null) return;
         String name = asString(body.get("name"));
         String email = asString(body.get("email"));
         String password = asString(body.get("password"));
         if (isEmpty(name) || isEmpty(email) || isEmpty(password)) { sendJson(ex, 400, jsonMsg("Missing fields")); return; }
-        try (Connection c = Database.getConnection()) {
-            try (PreparedStatement ps = c.prepareStatement("INSERT INTO students(name,email,password,role) VALUES(?,?,?,?)")) {
-                ps.setString(1, name); ps.setString(2, email); ps.setString(3, password); ps.setString(4, "student");
+        // Checked first so a taken email is answered without spending a hash on it.
+        try (Connection c = Database.getReadConnection();
+             PreparedStatement ps = c.prepareStatement("SELECT 1 FROM students WHERE email=?")) {
+            ps.setString(1, email);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) { sendJson(ex, 400, mapOf("success", false, "message", "Email already exists")); return; }
+            }
+        } catch (SQLException e) { sendDbError(ex, e); return; }
+        offload(ex, () -> Passwords.hash(password), hash -> {
+            try (Connection c = Database.getConnection();
+                 PreparedStatement ps = c.prepareStatement("INSERT INTO students(name,email,password,role) VALUES(?,?,?,?)")) {
+                ps.setString(1, name); ps.setString(2, email); ps.setString(3, hash); ps.setString(4, "student");
                 ps.executeUpdate();
+                sendJson(ex, 200, mapOf("success", true));
+            } catch (SQLException e) {
+                sendJson(ex, 400, mapOf("success", false, "message", "Email already exists"));
             }
-            sendJson(ex, 200, mapOf("success", true));
-        } catch (SQLException e) {
-            sendJson(ex, 400, mapOf("success", false, "message", "Email already exists"));
-        }
+        });
     }
 
+    // The row is looked up on the request thread; the password is verified on the hashing pool, which
+    // also sends the response. Recently verified logins are answered from the credential cache.
     private static void handleLogin(HttpExchange ex) throws IOException {
         setCors(ex);
         if ("OPTIONS".equalsIgnoreCase(ex.getRequestMethod())) { emptyOk(ex); return; }
         if (!"POST".equalsIgnoreCase(ex.getRequestMethod())) { sendJson(ex, 405, jsonMsg("Only POST")); return; }
-        Map<String, Object> body = readJson(ex);
+        Map<String, Object> body = readJson(ex); if (body == null) return;
         String email = asString(body.get("email"));
         String password = asString(body.get("password"));
         String role = Optional.ofNullable(asString(body.get("role"))).orElse("student");
-        try (Connection c = Database.getConnection()) {
-            try (PreparedStatement ps = c.prepareStatement("SELECT id,name,email,role FROM students WHERE email=? AND password=? AND role=?")) {
-                ps.setString(1, email); ps.setString(2, password); ps.setString(3, role);
-                ResultSet rs = ps.executeQuery();
+        if (email == null || password == null) { sendJson(ex, 401, mapOf("success", false, "message", "Invalid credentials")); return; }
+        // Guessing at one account is limited per address and email, on top of the loose per-address /api/login limit.
+        if (loginLimiter != null) {
+            long wait = loginLimiter.acquire(clientAddress(ex) + "|" + email.trim().toLowerCase());
+            if (wait > 0) { sendLimited(ex, wait); return; }
+        }
+        Map<String, Object> user = null;
+        String stored = null;
+        try (Connection c = Database.getReadConnection();
+             PreparedStatement ps = c.prepareStatement("SELECT id,name,email,role,password FROM students WHERE email=? AND role=?")) {
+            ps.setString(1, email); ps.setString(2, role);
+            try (ResultSet rs = ps.executeQuery()) {
                 if (rs.next()) {
-                    Map<String, Object> user = new LinkedHashMap<>();
+                    user = new LinkedHashMap<>();
                     user.put("id", rs.getInt("id"));
                     user.put("name", rs.getString("name"));
                     user.put("email", rs.getString("email"));
                     user.put("role", rs.getString("role"));
-                    String token = UUID.randomUUID().toString();
-                    tokenToSession.put(token, new Session(rs.getInt("id"), rs.getString("role")));
-                    sendJson(ex, 200, mapOf("success", true, "token", token, "user", user));
-                } else {
-                    sendJson(ex, 401, mapOf("success", false, "message", "Invalid credentials"));
+                    stored = rs.getString("password");
                 }
             }
-        } catch (SQLException e) { sendJson(ex, 500, jsonMsg("DB error")); }
+        } catch (SQLException e) { sendDbError(ex, e); return; }
+        String login = role + ":" + email;
+        if (user != null && credentials != null && credentials.matches(login, stored, password)) { sendLogin(ex, user); return; }
+        Map<String, Object> found = user;
+        String hash = user == null ? Passwords.dummyHash() : stored;
+        offload(ex, () -> Passwords.verify(password, hash), check -> {
+            if (found == null || !check.ok()) { sendJson(ex, 401, mapOf("success", false, "message", "Invalid credentials")); return; }
+            sendLogin(ex, found);
+            if (check.needsRehash()) Passwords.submit(() -> upgradePassword((Integer) found.get("id"), login, password, hash));
+            else if (credentials != null) credentials.put(login, hash, password);
+        });
+    }
+
+    private static void sendLogin(HttpExchange ex, Map<String, Object> user) throws IOException {
+        String token = sessions.create(new Session((Integer) user.get("id"), (String) user.get("role")));
+        sendJson(ex, 200, mapOf("success", true, "token", token, "user", user));
+    }
+
+    // Replaces a plaintext (or weaker) password after a successful login. Runs on the hashing pool once
+    // the response is sent; if the row changed in the meantime it is left alone.
+    private static Void upgradePassword(int studentId, String login, String password, String old) {
+        String hash = Passwords.hash(password);
+        try (Connection c = Database.getConnection();
+             PreparedStatement ps = c.prepareStatement("UPDATE students SET password=? WHERE id=? AND password=?")) {
+            ps.setString(1, hash); ps.setInt(2, studentId); ps.setString(3, old);
+            if (ps.executeUpdate() == 1) {
+                Passwords.upgraded();
+                if (credentials != null) credentials.put(login, hash, password);
+            }
+        } catch (SQLException e) {
+            System.err.println("Password upgrade for student " + studentId + " failed: " + e.getMessage());
+        }
+        return null;
+    }
+
+    private interface Reply<T> { void send(T value) throws IOException; }
+
+    // Runs work on the password pool and answers from there, so the request thread is released at once.
+    // A full pool queue is answered with 503; the request is timed until the reply has been sent.
+    private static <T> void offload(HttpExchange ex, Supplier<T> work, Reply<T> reply) throws IOException {
+        Metrics.Pending pending = Metrics.defer();
+        CompletableFuture<T> result = Passwords.submit(work);
+        if (result == null) { sendBusy(ex); pending.end(ex.getResponseCode()); return; }
+        result.whenComplete((value, error) -> {
+            try {
+                if (error == null) reply.send(value);
+                else {
+                    System.err.println("Password work failed on " + ex.getRequestURI().getPath() + ": " + error);
+                    sendJson(ex, 500, jsonMsg("Server error"));
+                }
+            } catch (IOException | RuntimeException e) {
+                if (!(e instanceof IOException)) System.err.println("Reply failed on " + ex.getRequestURI().getPath() + ": " + e);
+                ex.close();
+            } finally {
+                pending.end(ex.getResponseCode());
+            }
+        });
     }
 
     private static void handleLogout(HttpExchange ex) throws IOException {
         setCors(ex);
         if ("OPTIONS".equalsIgnoreCase(ex.getRequestMethod())) { emptyOk(ex); return; }
         String token = ex.getRequestHeaders().getFirst("X-Auth-Token");
-        if (token != null) tokenToSession.remove(token);
+        sessions.remove(token);
         sendJson(ex, 200, mapOf("success", true));
     }
 
@@ -97,61 +284,134 @@ public class Main {
         setCors(ex);
         if ("OPTIONS".equalsIgnoreCase(ex.getRequestMethod())) { emptyOk(ex); return; }
         if (!"GET".equalsIgnoreCase(ex.getRequestMethod())) { sendJson(ex, 405, jsonMsg("Only GET")); return; }
-        try (Connection c = Database.getConnection()) {
-            List<Map<String, Object>> rooms = new ArrayList<>();
-            try (PreparedStatement ps = c.prepareStatement("SELECT id,room_number,capacity,available FROM rooms ORDER BY room_number")) {
-                ResultSet rs = ps.executeQuery();
-                while (rs.next()) {
-                    rooms.add(mapOf(
-                            "id", rs.getInt("id"),
-                            "roomNumber", rs.getString("room_number"),
-                            "capacity", rs.getInt("capacity"),
-                            "available", rs.getInt("available")
-                    ));
-                }
-            }
-            sendJson(ex, 200, mapOf("rooms", rooms));
-        } catch (SQLException e) { sendJson(ex, 500, jsonMsg("DB error")); }
+        RoomCache.Snapshot snap = RoomCache.snapshot();
+        boolean gzip = snap.gzip() != null && ContentEncoding.acceptsGzip(ex);
+        ex.getResponseHeaders().set("ETag", gzip ? ContentEncoding.gzipEtag(snap.etag()) : snap.etag());
+        ex.getResponseHeaders().set("Cache-Control", "no-cache");
+        ex.getResponseHeaders().set("Vary", "Accept-Encoding");
+        if (ContentEncoding.notModified(ex, snap.etag())) { ex.sendResponseHeaders(304, -1); ex.close(); return; }
+        if (gzip) ex.getResponseHeaders().set("Content-Encoding", "gzip");
+        sendJsonBytes(ex, 200, gzip ? snap.gzip() : snap.json());
     }
 
+    // Filtered room list from RoomIndex: ?block=&floor=&capacity=&minCapacity=&maxCapacity=&all=&limit=.
+    // Only rooms with a free seat unless all=true; total counts every match, rooms holds the first limit.
+    private static void handleRoomSearch(HttpExchange ex) throws IOException {
+        setCors(ex);
+        if ("OPTIONS".equalsIgnoreCase(ex.getRequestMethod())) { emptyOk(ex); return; }
+        if (!"GET".equalsIgnoreCase(ex.getRequestMethod())) { sendJson(ex, 405, jsonMsg("Only GET")); return; }
+        Map<String, String> q = queryParams(ex);
+        RoomIndex.Filter f = roomFilter(ex, q); if (f == null) return;
+        Integer limit = q.containsKey("limit") ? asInt(q.get("limit")) : Integer.valueOf(MAX_PAGE);
+        if (limit == null || limit < 1 || limit > MAX_PAGE) { sendJson(ex, 400, jsonMsg("limit must be between 1 and " + MAX_PAGE)); return; }
+        boolean all = Boolean.parseBoolean(q.get("all"));
+        List<Map<String, Object>> out = new ArrayList<>();
+        for (RoomCache.Room r : RoomIndex.search(f, all, limit)) {
+            Map<String, Object> m = r.toMap();
+            m.put("block", RoomIndex.block(r.roomNumber()));
+            m.put("floor", RoomIndex.floor(r.roomNumber()));
+            out.add(m);
+        }
+        sendJson(ex, 200, mapOf("rooms", out, "total", RoomIndex.count(f, all)));
+    }
+
+    // block, floor, capacity (exact), minCapacity, maxCapacity; answers 400 and returns null if one is malformed.
+    private static RoomIndex.Filter roomFilter(HttpExchange ex, Map<String, String> q) throws IOException {
+        String block = isEmpty(q.get("block")) ? null : q.get("block").trim();
+        Integer floor = asInt(q.get("floor")), capacity = asInt(q.get("capacity")), min = asInt(q.get("minCapacity")), max = asInt(q.get("maxCapacity"));
+        if ((q.get("floor") != null && floor == null) || (q.get("capacity") != null && capacity == null)
+                || (q.get("minCapacity") != null && min == null) || (q.get("maxCapacity") != null && max == null)) {
+            sendJson(ex, 400, jsonMsg("floor, capacity, minCapacity and maxCapacity must be numbers")); return null;
+        }
+        if (capacity != null) { min = capacity; max = capacity; }
+        return new RoomIndex.Filter(block, floor, min, max);
+    }
+
+    private static void handleRoomStream(HttpExchange ex) throws IOException {
+        setCors(ex);
+        if ("OPTIONS".equalsIgnoreCase(ex.getRequestMethod())) { emptyOk(ex); return; }
+        if (!"GET".equalsIgnoreCase(ex.getRequestMethod())) { sendJson(ex, 405, jsonMsg("Only GET")); return; }
+        roomStream.subscribe(ex);
+    }
+
+    // POST goes through the booking queue and waits up to BOOK_WAIT_MS for the result; if it is
+    // not ready by then the answer is 202 with the queue position, and GET /api/book reports on it.
+    // Repeats share the first request's ticket (and so its answer) through bookRequests: ones with the
+    // same Idempotency-Key for IDEMPOTENCY_TTL_MS, identical bodies without a key while pending and
+    // for DUPLICATE_WINDOW_MS after. A key reused with a different body is answered 422.
     private static void handleBook(HttpExchange ex) throws IOException {
         setCors(ex);
         if ("OPTIONS".equalsIgnoreCase(ex.getRequestMethod())) { emptyOk(ex); return; }
-        if (!"POST".equalsIgnoreCase(ex.getRequestMethod())) { sendJson(ex, 405, jsonMsg("Only POST")); return; }
         Session session = requireAuth(ex, "student"); if (session == null) return;
-        Map<String, Object> body = readJson(ex);
-        Integer roomId = asInt(body.get("roomId"));
-        if (roomId == null) { sendJson(ex, 400, jsonMsg("roomId required")); return; }
-        try (Connection c = Database.getConnection()) {
-            c.setAutoCommit(false);
-            try {
-                // Ensure student has no active booking
-                try (PreparedStatement ps = c.prepareStatement("SELECT id FROM bookings WHERE student_id=? AND status='active'")) {
-                    ps.setInt(1, session.userId);
-                    if (ps.executeQuery().next()) { c.rollback(); sendJson(ex, 400, jsonMsg("You already have an active booking")); return; }
-                }
-                // Check room availability
-                int available = 0; String roomNumber = null;
-                try (PreparedStatement ps = c.prepareStatement("SELECT room_number,available FROM rooms WHERE id=?")) {
-                    ps.setInt(1, roomId);
-                    ResultSet rs = ps.executeQuery();
-                    if (rs.next()) { available = rs.getInt("available"); roomNumber = rs.getString("room_number"); }
-                }
-                if (available <= 0) { c.rollback(); sendJson(ex, 400, jsonMsg("Room not available")); return; }
-                // Create booking
-                try (PreparedStatement ps = c.prepareStatement("INSERT INTO bookings(student_id,room_id,status,created_at) VALUES(?,?,?,?)")) {
-                    ps.setInt(1, session.userId); ps.setInt(2, roomId); ps.setString(3, "active"); ps.setString(4, LocalDateTime.now().toString());
-                    ps.executeUpdate();
+        BookingQueue.Ticket ticket;
+        if ("GET".equalsIgnoreCase(ex.getRequestMethod())) {
+            ticket = bookingQueue.ticketFor(session.userId());
+            if (ticket == null) { sendJson(ex, 404, jsonMsg("No booking request")); return; }
+        } else if ("POST".equalsIgnoreCase(ex.getRequestMethod())) {
+            String key = ex.getRequestHeaders().getFirst("Idempotency-Key");
+            if (key != null && (key.isBlank() || key.length() > MAX_IDEMPOTENCY_KEY)) { sendJson(ex, 400, jsonMsg("Idempotency-Key must be 1 to " + MAX_IDEMPOTENCY_KEY + " characters")); return; }
+            byte[] raw = readBody(ex, Json.MAX_INPUT_BYTES); if (raw == null) return;
+            Map<String, Object> body = parseJson(ex, raw); if (body == null) return;
+            Supplier<BookingQueue.Ticket> submit;
+            if (body.get("preferences") != null) {
+                List<RoomIndex.Filter> prefs = new ArrayList<>();
+                if (!(body.get("preferences") instanceof List) || ((List<?>) body.get("preferences")).isEmpty() || ((List<?>) body.get("preferences")).size() > MAX_PREFERENCES) {
+                    sendJson(ex, 400, jsonMsg("preferences must be a list of 1 to " + MAX_PREFERENCES + " filters")); return;
                 }
-                // Decrement availability
-                try (PreparedStatement ps = c.prepareStatement("UPDATE rooms SET available=available-1 WHERE id=?")) {
-                    ps.setInt(1, roomId); ps.executeUpdate();
+                for (Object p : (List<?>) body.get("preferences")) {
+                    if (!(p instanceof Map)) { sendJson(ex, 400, jsonMsg("Each preference must be an object")); return; }
+                    Map<String, String> f = new HashMap<>();
+                    for (Map.Entry<?, ?> e : ((Map<?, ?>) p).entrySet()) if (e.getValue() != null) f.put(String.valueOf(e.getKey()), String.valueOf(e.getValue()));
+                    RoomIndex.Filter filter = roomFilter(ex, f); if (filter == null) return;
+                    prefs.add(filter);
                 }
-                c.commit();
-                sendJson(ex, 200, mapOf("success", true, "roomNumber", roomNumber));
-            } catch (SQLException err) { c.rollback(); throw err; }
-            finally { c.setAutoCommit(true); }
-        } catch (SQLException e) { sendJson(ex, 500, jsonMsg("DB error")); }
+                submit = () -> bookingQueue.submit(session.userId(), prefs);
+            } else {
+                Integer roomId = asInt(body.get("roomId"));
+                if (roomId == null) { sendJson(ex, 400, jsonMsg("roomId or preferences required")); return; }
+                submit = () -> bookingQueue.submit(session.userId(), roomId);
+            }
+            String fingerprint = RequestCoalescer.fingerprint(raw);
+            String dedup = session.userId() + (key != null ? "|key:" + key : "|body:" + fingerprint);
+            RequestCoalescer.Join<BookingQueue.Ticket> join = bookRequests.join(dedup, fingerprint, submit);
+            if (join == null) { sendBusy(ex); return; }
+            if (join.kind() == RequestCoalescer.Kind.CONFLICT) { sendJson(ex, 422, jsonMsg("Idempotency-Key was already used for a different request")); return; }
+            ticket = join.value();
+            if (join.kind() == RequestCoalescer.Kind.SHARED) ex.getResponseHeaders().set("X-Coalesced", "true");
+            else {
+                BookingQueue.Ticket t = ticket;
+                long linger = key != null ? IDEMPOTENCY_TTL_MS : DUPLICATE_WINDOW_MS;
+                // Failures (busy, DB errors) are not replayed; the next attempt starts over.
+                t.result.whenComplete((r, e) -> bookRequests.finish(dedup, t, e == null ? linger : 0));
+            }
+        } else { sendJson(ex, 405, jsonMsg("Method not allowed")); return; }
+        BookingService.Result r;
+        try {
+            r = ticket.result.get("GET".equalsIgnoreCase(ex.getRequestMethod()) ? 0 : BOOK_WAIT_MS, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            Map<String, Object> queued = mapOf("queued", true, "position", bookingQueue.position(ticket));
+            if (ticket.preferences == null) queued.put("roomId", ticket.roomId);
+            sendJson(ex, 202, queued);
+            return;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            sendBusy(ex);
+            return;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof BookingService.BusyException) sendBusy(ex);
+            else if (e.getCause() instanceof SQLException) sendDbError(ex, (SQLException) e.getCause());
+            else { System.err.println("Booking failed: " + e.getCause()); sendJson(ex, 500, jsonMsg("Booking failed")); }
+            return;
+        }
+        switch (r.status()) {
+            case BOOKED:
+                Map<String, Object> booked = mapOf("success", true, "roomNumber", r.roomNumber(), "queuePosition", ticket.positionAtSubmit);
+                if (ticket.preferences != null) { booked.put("roomId", r.roomId()); booked.put("preference", ticket.preference); }
+                sendJson(ex, 200, booked);
+                break;
+            case ALREADY_BOOKED: sendJson(ex, 400, jsonMsg("You already have an active booking")); break;
+            default: sendJson(ex, 400, jsonMsg(ticket.preferences == null ? "Room not available" : "No room matches your preferences"));
+        }
     }
 
     private static void handleMyBooking(HttpExchange ex) throws IOException {
@@ -159,9 +419,9 @@ public class Main {
         if ("OPTIONS".equalsIgnoreCase(ex.getRequestMethod())) { emptyOk(ex); return; }
         Session session = requireAuth(ex, "student"); if (session == null) return;
         if ("GET".equalsIgnoreCase(ex.getRequestMethod())) {
-            try (Connection c = Database.getConnection()) {
+            try (Connection c = Database.getReadConnection()) {
                 try (PreparedStatement ps = c.prepareStatement("SELECT b.id,b.status,b.created_at,r.room_number FROM bookings b JOIN rooms r ON b.room_id=r.id WHERE b.student_id=? AND b.status='active'")) {
-                    ps.setInt(1, session.userId);
+                    ps.setInt(1, session.userId());
                     ResultSet rs = ps.executeQuery();
                     if (rs.next()) {
                         Map<String, Object> bk = mapOf(
@@ -173,30 +433,16 @@ public class Main {
                         sendJson(ex, 200, mapOf("booking", bk));
                     } else { sendJson(ex, 200, mapOf("booking", null)); }
                 }
-            } catch (SQLException e) { sendJson(ex, 500, jsonMsg("DB error")); }
+            } catch (SQLException e) { sendDbError(ex, e); }
         } else if ("DELETE".equalsIgnoreCase(ex.getRequestMethod())) {
-            try (Connection c = Database.getConnection()) {
-                c.setAutoCommit(false);
-                try {
-                    Integer roomId = null;
-                    Integer bookingId = null;
-                    try (PreparedStatement ps = c.prepareStatement("SELECT id,room_id FROM bookings WHERE student_id=? AND status='active'")) {
-                        ps.setInt(1, session.userId);
-                        ResultSet rs = ps.executeQuery();
-                        if (rs.next()) { bookingId = rs.getInt("id"); roomId = rs.getInt("room_id"); }
-                    }
-                    if (bookingId == null) { c.rollback(); sendJson(ex, 400, jsonMsg("No active booking")); return; }
-                    try (PreparedStatement ps = c.prepareStatement("UPDATE bookings SET status='cancelled' WHERE id=?")) {
-                        ps.setInt(1, bookingId); ps.executeUpdate();
-                    }
-                    try (PreparedStatement ps = c.prepareStatement("UPDATE rooms SET available=available+1 WHERE id=?")) {
-                        ps.setInt(1, roomId); ps.executeUpdate();
-                    }
-                    c.commit();
-                    sendJson(ex, 200, mapOf("success", true));
-                } catch (SQLException err) { c.rollback(); throw err; }
-                finally { c.setAutoCommit(true); }
-            } catch (SQLException e) { sendJson(ex, 500, jsonMsg("DB error")); }
+            try {
+                BookingService.Result r = BookingService.cancel(session.userId());
+                if (r.status() == BookingService.Status.NO_BOOKING) { sendJson(ex, 400, jsonMsg("No active booking")); return; }
+                // A repeated booking request must not be answered with the booking just cancelled.
+                bookRequests.forget(session.userId() + "|body:");
+                sendJson(ex, 200, mapOf("success", true));
+            } catch (BookingService.BusyException e) { sendBusy(ex); }
+            catch (SQLException e) { sendDbError(ex, e); }
         } else { sendJson(ex, 405, jsonMsg("Method not allowed")); }
     }
 
@@ -205,58 +451,220 @@ public class Main {
         if ("OPTIONS".equalsIgnoreCase(ex.getRequestMethod())) { emptyOk(ex); return; }
         Session session = requireAuth(ex, "admin"); if (session == null) return;
         if ("POST".equalsIgnoreCase(ex.getRequestMethod())) {
-            Map<String, Object> body = readJson(ex);
+            Map<String, Object> body = readJson(ex); if (body == null) return;
             String roomNumber = asString(body.get("roomNumber"));
             Integer capacity = asInt(body.get("capacity"));
             Integer available = asInt(body.get("available"));
             if (isEmpty(roomNumber) || capacity == null || available == null) { sendJson(ex, 400, jsonMsg("Missing fields")); return; }
-            try (Connection c = Database.getConnection()) {
-                try (PreparedStatement ps = c.prepareStatement("INSERT INTO rooms(room_number,capacity,available) VALUES(?,?,?)")) {
-                    ps.setString(1, roomNumber); ps.setInt(2, capacity); ps.setInt(3, available);
-                    ps.executeUpdate();
-                }
+            if (capacity < 1 || available < 0 || available > capacity) { sendJson(ex, 400, jsonMsg("capacity must be positive and available between 0 and capacity")); return; }
+            try {
+                RoomCache.Room room = BookingService.inTransaction(c -> {
+                    try (PreparedStatement ps = c.prepareStatement("INSERT INTO rooms(room_number,capacity,available,held) VALUES(?,?,?,?) RETURNING id")) {
+                        ps.setString(1, roomNumber); ps.setInt(2, capacity); ps.setInt(3, available); ps.setInt(4, capacity - available);
+                        ResultSet rs = ps.executeQuery();
+                        rs.next();
+                        RoomCache.Room r = new RoomCache.Room(rs.getInt(1), roomNumber, capacity, available);
+                        EventLog.roomAdded(r);
+                        return r;
+                    }
+                });
+                RoomCache.put(room);
                 sendJson(ex, 200, mapOf("success", true));
-            } catch (SQLException e) { sendJson(ex, 400, mapOf("success", false, "message", "Room already exists")); }
+            } catch (BookingService.BusyException e) { sendBusy(ex); }
+            catch (SQLException e) { sendJson(ex, 400, mapOf("success", false, "message", "Room already exists")); }
         } else { sendJson(ex, 405, jsonMsg("Only POST")); }
     }
 
+    // Body: a JSON array of rooms (or {"rooms": [...]}), or CSV when Content-Type is text/csv.
+    private static void handleAdminRoomImport(HttpExchange ex) throws IOException {
+        setCors(ex);
+        if ("OPTIONS".equalsIgnoreCase(ex.getRequestMethod())) { emptyOk(ex); return; }
+        Session session = requireAuth(ex, "admin"); if (session == null) return;
+        if (!"POST".equalsIgnoreCase(ex.getRequestMethod())) { sendJson(ex, 405, jsonMsg("Only POST")); return; }
+        byte[] body = readBody(ex, MAX_IMPORT_BYTES); if (body == null) return;
+        String type = String.valueOf(ex.getRequestHeaders().getFirst("Content-Type")).toLowerCase();
+        List<BulkService.RoomRow> rows;
+        if (type.startsWith("text/csv")) {
+            rows = BulkService.roomsFromCsv(body);
+        } else {
+            Object json;
+            try { json = Json.parseValue(body, MAX_IMPORT_BYTES); }
+            catch (Json.JsonException e) { sendJson(ex, 400, jsonMsg("Invalid JSON: " + e.getMessage())); return; }
+            if (json instanceof Map) json = ((Map<?, ?>) json).get("rooms");
+            if (!(json instanceof List)) { sendJson(ex, 400, jsonMsg("Expected an array of rooms")); return; }
+            rows = BulkService.roomsFromJson((List<?>) json);
+        }
+        if (rows.isEmpty() || rows.size() > BulkService.MAX_ROWS) { sendJson(ex, 400, jsonMsg("Between 1 and " + BulkService.MAX_ROWS + " rooms per import")); return; }
+        try { sendJson(ex, 200, BulkService.importRooms(rows)); }
+        catch (BookingService.BusyException e) { sendBusy(ex); }
+        catch (SQLException e) { sendDbError(ex, e); }
+    }
+
+    // Body: {"studentIds": [...], "roomNumbers": [...]}; students are placed in list order,
+    // roomNumbers optionally limits which rooms are filled.
+    private static void handleAdminAllocate(HttpExchange ex) throws IOException {
+        setCors(ex);
+        if ("OPTIONS".equalsIgnoreCase(ex.getRequestMethod())) { emptyOk(ex); return; }
+        Session session = requireAuth(ex, "admin"); if (session == null) return;
+        if (!"POST".equalsIgnoreCase(ex.getRequestMethod())) { sendJson(ex, 405, jsonMsg("Only POST")); return; }
+        Map<String, Object> body = readJson(ex); if (body == null) return;
+        if (!(body.get("studentIds") instanceof List)) { sendJson(ex, 400, jsonMsg("studentIds must be an array")); return; }
+        List<Integer> studentIds = new ArrayList<>();
+        for (Object o : (List<?>) body.get("studentIds")) studentIds.add(asInt(o));
+        Set<String> roomNumbers = null;
+        if (body.get("roomNumbers") instanceof List) {
+            roomNumbers = new HashSet<>();
+            for (Object o : (List<?>) body.get("roomNumbers")) roomNumbers.add(asString(o));
+        }
+        if (studentIds.isEmpty() || studentIds.size() > BulkService.MAX_ROWS) { sendJson(ex, 400, jsonMsg("Between 1 and " + BulkService.MAX_ROWS + " students per allocation")); return; }
+        try { sendJson(ex, 200, BulkService.allocate(studentIds, roomNumbers)); }
+        catch (BookingService.BusyException e) { sendBusy(ex); }
+        catch (SQLException e) { sendDbError(ex, e); }
+    }
+
     private static void handleAdminBookings(HttpExchange ex) throws IOException {
         setCors(ex);
         if ("OPTIONS".equalsIgnoreCase(ex.getRequestMethod())) { emptyOk(ex); return; }
         Session session = requireAuth(ex, "admin"); if (session == null) return;
         if (!"GET".equalsIgnoreCase(ex.getRequestMethod())) { sendJson(ex, 405, jsonMsg("Only GET")); return; }
-        try (Connection c = Database.getConnection()) {
-            List<Map<String, Object>> bookings = new ArrayList<>();
-            String sql = "SELECT b.id,b.status,b.created_at,s.name,s.email,r.room_number FROM bookings b JOIN students s ON b.student_id=s.id JOIN rooms r ON b.room_id=r.id ORDER BY b.id DESC";
-            try (PreparedStatement ps = c.prepareStatement(sql)) {
+        Map<String, String> q = queryParams(ex);
+        Integer afterId = asInt(q.get("after_id"));
+        Integer limit = q.containsKey("limit") ? asInt(q.get("limit")) : Integer.valueOf(DEFAULT_PAGE);
+        String status = q.get("status");
+        if ((q.containsKey("after_id") && afterId == null) || limit == null || limit < 1 || limit > MAX_PAGE) { sendJson(ex, 400, jsonMsg("after_id must be a number and limit between 1 and " + MAX_PAGE)); return; }
+        if (status != null && !status.equals("active") && !status.equals("cancelled")) { sendJson(ex, 400, jsonMsg("status must be active or cancelled")); return; }
+
+        // Keyset pagination: newest first, the next page starts below the last id returned.
+        StringBuilder sql = new StringBuilder("SELECT b.id,b.status,b.created_at,s.name,s.email,r.room_number FROM bookings b JOIN students s ON b.student_id=s.id JOIN rooms r ON b.room_id=r.id WHERE 1=1");
+        List<Object> args = new ArrayList<>();
+        if (afterId != null) { sql.append(" AND b.id<?"); args.add(afterId); }
+        if (status != null) { sql.append(" AND b.status=?"); args.add(status); }
+        if (!isEmpty(q.get("room"))) { sql.append(" AND b.room_id=(SELECT id FROM rooms WHERE room_number=?)"); args.add(q.get("room")); }
+        if (!isEmpty(q.get("from"))) { sql.append(" AND b.created_at>=?"); args.add(q.get("from")); }
+        if (!isEmpty(q.get("to"))) { sql.append(" AND b.created_at<?"); args.add(q.get("to")); }
+        sql.append(" ORDER BY b.id DESC LIMIT ?");
+        args.add(limit + 1);
+
+        try (Connection c = Database.getReadConnection()) {
+            try (PreparedStatement ps = c.prepareStatement(sql.toString())) {
+                for (int i = 0; i < args.size(); i++) ps.setObject(i + 1, args.get(i));
                 ResultSet rs = ps.executeQuery();
-                while (rs.next()) {
-                    bookings.add(mapOf(
-                            "id", rs.getInt("id"),
-                            "status", rs.getString("status"),
-                            "createdAt", rs.getString("created_at"),
-                            "studentName", rs.getString("name"),
-                            "studentEmail", rs.getString("email"),
-                            "roomNumber", rs.getString("room_number")
-                    ));
+                // Rows are written as they are read, so memory does not grow with the page size.
+                ex.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+                // Not try-with-resources: closing the writer commits the page, and a page the cursor failed
+                // halfway through must be aborted before anything closes it. sendDbError then still answers
+                // 500 if abort() left the exchange untouched, and cuts the connection off if it did not.
+                ResponseStream body = new ResponseStream(ex, 200);
+                Json.Writer w = new Json.Writer(body);
+                try {
+                    w.beginObject().name("bookings").beginArray();
+                    int n = 0, lastId = 0;
+                    while (n < limit && rs.next()) {
+                        lastId = rs.getInt("id");
+                        w.beginObject()
+                                .name("id").value(lastId)
+                                .name("status").value(rs.getString("status"))
+                                .name("createdAt").value(rs.getString("created_at"))
+                                .name("studentName").value(rs.getString("name"))
+                                .name("studentEmail").value(rs.getString("email"))
+                                .name("roomNumber").value(rs.getString("room_number"))
+                                .endObject();
+                        n++;
+                    }
+                    w.endArray().name("nextAfterId").value(rs.next() ? (Object) lastId : null).endObject();
+                } catch (SQLException | RuntimeException e) {
+                    body.abort();
+                    throw e;
                 }
+                w.close();
             }
-            sendJson(ex, 200, mapOf("bookings", bookings));
-        } catch (SQLException e) { sendJson(ex, 500, jsonMsg("DB error")); }
+        } catch (SQLException e) { sendDbError(ex, e); }
+    }
+
+    // Drift between rooms.available, the bookings table and the event log; see Consistency.
+    private static void handleAdminConsistency(HttpExchange ex) throws IOException {
+        setCors(ex);
+        if ("OPTIONS".equalsIgnoreCase(ex.getRequestMethod())) { emptyOk(ex); return; }
+        Session session = requireAuth(ex, "admin"); if (session == null) return;
+        if (!"GET".equalsIgnoreCase(ex.getRequestMethod())) { sendJson(ex, 405, jsonMsg("Only GET")); return; }
+        try { sendJson(ex, 200, Consistency.check()); }
+        catch (BookingService.BusyException e) { sendBusy(ex); }
+        catch (SQLException e) { sendDbError(ex, e); }
+    }
+
+    // The newest events from the log (?room=id for one room's history, ?limit= up to MAX_PAGE).
+    private static void handleAdminEvents(HttpExchange ex) throws IOException {
+        setCors(ex);
+        if ("OPTIONS".equalsIgnoreCase(ex.getRequestMethod())) { emptyOk(ex); return; }
+        Session session = requireAuth(ex, "admin"); if (session == null) return;
+        if (!"GET".equalsIgnoreCase(ex.getRequestMethod())) { sendJson(ex, 405, jsonMsg("Only GET")); return; }
+        if (!EventLog.isOpen()) { sendJson(ex, 404, jsonMsg("Event log is disabled")); return; }
+        Map<String, String> q = queryParams(ex);
+        Integer room = asInt(q.get("room"));
+        Integer limit = q.containsKey("limit") ? asInt(q.get("limit")) : Integer.valueOf(DEFAULT_PAGE);
+        if ((q.containsKey("room") && room == null) || limit == null || limit < 1 || limit > MAX_PAGE) { sendJson(ex, 400, jsonMsg("room must be a number and limit between 1 and " + MAX_PAGE)); return; }
+        List<Map<String, Object>> out = new ArrayList<>();
+        for (EventLog.Event e : EventLog.events(room, limit)) {
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("seq", e.seq());
+            m.put("time", Instant.ofEpochMilli(e.time()).toString());
+            m.put("type", e.type().name().toLowerCase());
+            if (e.roomId() != 0) m.put("roomId", e.roomId());
+            if (e.roomNumber() != null) m.put("roomNumber", e.roomNumber());
+            if (e.type() == EventLog.Type.ROOM) { m.put("capacity", e.capacity()); m.put("available", e.available()); }
+            if (e.bookingId() != 0) { m.put("bookingId", e.bookingId()); m.put("studentId", e.studentId()); }
+            out.add(m);
+        }
+        sendJson(ex, 200, mapOf("events", out));
+    }
+
+    private static void printConsistency(Map<String, Object> report) {
+        System.out.println("Consistency check: " + report.get("rooms") + " rooms, " + report.get("drifted") + " drifted (" + report.get("elapsedMs") + " ms)");
+        for (Object d : (List<?>) report.get("drift")) System.out.println("  " + Json.stringify(d));
+    }
+
+    private static void handleAdminMetrics(HttpExchange ex) throws IOException {
+        setCors(ex);
+        if ("OPTIONS".equalsIgnoreCase(ex.getRequestMethod())) { emptyOk(ex); return; }
+        Session session = requireAuth(ex, "admin"); if (session == null) return;
+        if (!"GET".equalsIgnoreCase(ex.getRequestMethod())) { sendJson(ex, 405, jsonMsg("Only GET")); return; }
+        Map<String, Map<String, Object>> components = new LinkedHashMap<>();
+        components.put("db_pool", Database.poolStats());
+        components.put("db", BookingService.stats());
+        components.put("executor", RequestExecutor.stats());
+        components.put("sessions", sessions.stats());
+        components.put("room_stream", roomStream.stats());
+        components.put("booking_queue", bookingQueue.stats());
+        components.put("passwords", Passwords.stats());
+        if (credentials != null) components.put("credential_cache", credentials.stats());
+        if (staticFiles != null) components.put("static_files", staticFiles.stats());
+        if (EventLog.isOpen()) components.put("event_log", EventLog.stats());
+        components.put("room_index", RoomIndex.stats());
+        Map<String, Object> limits = new LinkedHashMap<>();
+        rateLimiters.forEach((path, l) -> limits.put(path, l.stats()));
+        components.put("rate_limit", limits);
+        components.put("book_requests", bookRequests.stats());
+        byte[] body = Metrics.prometheus(components).getBytes(StandardCharsets.UTF_8);
+        ex.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+        ex.sendResponseHeaders(200, body.length);
+        try (OutputStream os = ex.getResponseBody()) { os.write(body); }
     }
 
     // ===== Helpers =====
     private static void setCors(HttpExchange ex) {
         ex.getResponseHeaders().set("Access-Control-Allow-Origin", "*");
-        ex.getResponseHeaders().set("Access-Control-Allow-Headers", "Content-Type,X-Auth-Token");
+        ex.getResponseHeaders().set("Access-Control-Allow-Headers", "Content-Type,X-Auth-Token,Idempotency-Key");
+        ex.getResponseHeaders().set("Access-Control-Expose-Headers", "Retry-After,X-Coalesced");
         ex.getResponseHeaders().set("Access-Control-Allow-Methods", "GET,POST,DELETE,OPTIONS");
+        // Pages opened from another origin (e.g. file://) preflight once per 10 minutes, not per request.
+        ex.getResponseHeaders().set("Access-Control-Max-Age", "600");
     }
     private static void emptyOk(HttpExchange ex) throws IOException { ex.sendResponseHeaders(204, -1); }
 
     private static Session requireAuth(HttpExchange ex, String role) throws IOException {
         String token = ex.getRequestHeaders().getFirst("X-Auth-Token");
-        Session session = tokenToSession.get(token);
-        if (session == null || (role != null && !role.equals(session.role))) {
+        Session session = sessions.get(token);
+        if (session == null || (role != null && !role.equals(session.role()))) {
             sendJson(ex, 401, jsonMsg("Unauthorized"));
             return null;
         }
@@ -265,19 +673,83 @@ public class Main {
 
     private static Map<String, Object> jsonMsg(String m) { return mapOf("message", m); }
 
+    private static Map<String, String> queryParams(HttpExchange ex) {
+        Map<String, String> params = new HashMap<>();
+        String raw = ex.getRequestURI().getRawQuery();
+        if (raw == null) return params;
+        for (String pair : raw.split("&")) {
+            int eq = pair.indexOf('=');
+            String k = eq < 0 ? pair : pair.substring(0, eq);
+            String v = eq < 0 ? "" : pair.substring(eq + 1);
+            params.put(URLDecoder.decode(k, StandardCharsets.UTF_8), URLDecoder.decode(v, StandardCharsets.UTF_8));
+        }
+        return params;
+    }
+
+    private static void sendBusy(HttpExchange ex) throws IOException {
+        ex.getResponseHeaders().set("Retry-After", "1");
+        sendJson(ex, 503, jsonMsg("Server busy, please retry"));
+    }
+
+    // Retry-After is in whole seconds, rounded up so a client that waits that long is let through.
+    private static void sendLimited(HttpExchange ex, long waitNanos) throws IOException {
+        long seconds = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + 999_999_999));
+        ex.getResponseHeaders().set("Retry-After", Long.toString(seconds));
+        sendJson(ex, 429, jsonMsg("Too many requests, retry in " + seconds + " s"));
+    }
+
+    // Returns null after answering 400/413 when the body is not a JSON object or is too large.
     private static Map<String, Object> readJson(HttpExchange ex) throws IOException {
+        byte[] bytes = readBody(ex, Json.MAX_INPUT_BYTES); if (bytes == null) return null;
+        return parseJson(ex, bytes);
+    }
+
+    // Returns null after answering 400 when the bytes are not a JSON object.
+    private static Map<String, Object> parseJson(HttpExchange ex, byte[] bytes) throws IOException {
+        if (isBlank(bytes)) return new HashMap<>();
+        try { return Json.parse(bytes); }
+        catch (Json.JsonException e) { sendJson(ex, 400, jsonMsg("Invalid JSON: " + e.getMessage())); return null; }
+    }
+
+    // Returns null after answering 413 when the body is larger than max bytes.
+    private static byte[] readBody(HttpExchange ex, int max) throws IOException {
         try (InputStream is = ex.getRequestBody()) {
-            String text = new String(is.readAllBytes(), StandardCharsets.UTF_8).trim();
-            if (text.isEmpty()) return new HashMap<>();
-            return Json.parse(text);
+            return Json.readBounded(is, max);
+        } catch (Json.JsonException e) {
+            sendJson(ex, 413, jsonMsg("Request body too large"));
+            return null;
         }
     }
 
+    private static boolean isBlank(byte[] bytes) {
+        for (byte b : bytes) if (b != ' ' && b != '\n' && b != '\r' && b != '\t') return false;
+        return true;
+    }
+
+    // Encodes straight into the response; small bodies get a Content-Length, large ones are chunked.
     private static void sendJson(HttpExchange ex, int status, Map<String, Object> body) throws IOException {
-        byte[] bytes = Json.stringify(body).getBytes(StandardCharsets.UTF_8);
+        long start = System.nanoTime();
+        ex.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        try (Json.Writer w = new Json.Writer(new ResponseStream(ex, status))) { w.value(body); }
+        finally { Metrics.addWriteTime(System.nanoTime() - start); }
+    }
+
+    private static void sendJsonBytes(HttpExchange ex, int status, byte[] bytes) throws IOException {
+        long start = System.nanoTime();
         ex.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
         ex.sendResponseHeaders(status, bytes.length);
         try (OutputStream os = ex.getResponseBody()) { os.write(bytes); }
+        finally { Metrics.addWriteTime(System.nanoTime() - start); }
+    }
+
+    // Logs and counts the error; if the response was already started (streamed pages) it can only be cut off:
+    // the IOException reaches the HTTP server, which drops the connection without ending the chunked body,
+    // so the client sees a truncated response instead of a short one.
+    private static void sendDbError(HttpExchange ex, SQLException e) throws IOException {
+        Metrics.dbError();
+        System.err.println("DB error on " + ex.getRequestMethod() + " " + ex.getRequestURI().getPath() + ": " + e.getMessage());
+        if (ex.getResponseCode() == -1) sendJson(ex, 500, jsonMsg("DB error"));
+        else throw new IOException("Response cut off after DB error", e);
     }
 
     private static boolean isEmpty(String s) { return s == null || s.isBlank(); }
@@ -294,8 +766,6 @@ public class Main {
         }
         return map;
     }
-
-    private record Session(int userId, String role) {}
 }
 
 
@@ -0,0 +1,228 @@
+package com.hostel;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// Per-endpoint request metrics, rendered in the Prometheus text format by GET /api/admin/metrics.
+// Main.route wraps every handler: it counts requests by status code and records the latency in a
+// log-linear histogram (HDR-style: 32 linear sub-buckets per power of two, so any quantile is within
+// about 3%). Time spent holding a database connection and time spent encoding/writing JSON are
+// accumulated per request thread and added to the endpoint when the request ends. Everything on
+// the request path is a LongAdder or an atomic array slot, so recording takes no lock.
+class Metrics {
+    private static final List<Endpoint> endpoints = new CopyOnWriteArrayList<>();
+    private static final LongAdder dbErrors = new LongAdder();
+    private static final ThreadLocal<RequestTimes> CURRENT = ThreadLocal.withInitial(RequestTimes::new);
+
+    private static final class RequestTimes {
+        boolean active;
+        boolean deferred;
+        Endpoint endpoint;
+        long startNanos;
+        long dbNanos;
+        long writeNanos;
+    }
+
+    // A request whose response will be sent from another thread; end() must be called once it has been.
+    // DB time is what the request thread used before handing over.
+    static final class Pending {
+        private final Endpoint endpoint;
+        private final long startNanos;
+        private final long dbNanos;
+
+        private Pending(Endpoint endpoint, long startNanos, long dbNanos) { this.endpoint = endpoint; this.startNanos = startNanos; this.dbNanos = dbNanos; }
+
+        void end(int code) { endpoint.record(code, System.nanoTime() - startNanos, dbNanos, 0); }
+    }
+
+    static Endpoint endpoint(String path) {
+        Endpoint e = new Endpoint(path);
+        endpoints.add(e);
+        return e;
+    }
+
+    // Marks the start of a request on this thread; DB and write time is only collected in between.
+    static void begin(Endpoint endpoint, long startNanos) {
+        RequestTimes t = CURRENT.get();
+        t.active = true; t.deferred = false; t.endpoint = endpoint; t.startNanos = startNanos; t.dbNanos = 0; t.writeNanos = 0;
+    }
+
+    // Called by a handler that hands the exchange to another thread; the request is recorded
+    // when the returned Pending is ended instead of when the handler returns.
+    static Pending defer() {
+        RequestTimes t = CURRENT.get();
+        t.deferred = true;
+        return new Pending(t.endpoint, t.startNanos, t.dbNanos);
+    }
+
+    // Called when a pooled connection is returned, with how long it was held.
+    static void addDbTime(long nanos) {
+        RequestTimes t = CURRENT.get();
+        if (t.active) t.dbNanos += nanos;
+    }
+
+    static void addWriteTime(long nanos) {
+        RequestTimes t = CURRENT.get();
+        if (t.active) t.writeNanos += nanos;
+    }
+
+    static void dbError() { dbErrors.increment(); }
+
+    static final class Endpoint {
+        final String path;
+        private final ConcurrentHashMap<Integer, LongAdder> codes = new ConcurrentHashMap<>();
+        private final Histogram latency = new Histogram();
+        private final LongAdder dbNanos = new LongAdder();
+        private final LongAdder writeNanos = new LongAdder();
+
+        Endpoint(String path) { this.path = path; }
+
+        // code is -1 when the handler ended without sending a response.
+        void end(int code, long startNanos) {
+            RequestTimes t = CURRENT.get();
+            t.active = false;
+            if (t.deferred) { t.deferred = false; return; }
+            record(code, System.nanoTime() - startNanos, t.dbNanos, t.writeNanos);
+        }
+
+        private void record(int code, long elapsedNanos, long db, long write) {
+            LongAdder c = codes.get(code);
+            if (c == null) c = codes.computeIfAbsent(code, k -> new LongAdder());
+            c.increment();
+            latency.record(elapsedNanos / 1000);
+            if (db > 0) dbNanos.add(db);
+            if (write > 0) writeNanos.add(write);
+        }
+    }
+
+    // Latencies in microseconds, up to 2^37 (about 38 hours); larger values land in the last bucket.
+    static final class Histogram {
+        private static final int SUB_BITS = 5;
+        private static final int SUB = 1 << SUB_BITS;
+        private static final int MAX_EXP = 36;
+        private static final long MAX_VALUE = (1L << (MAX_EXP + 1)) - 1;
+
+        private final AtomicLongArray counts = new AtomicLongArray(SUB + (MAX_EXP - SUB_BITS + 1) * SUB);
+        private final LongAdder total = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+
+        void record(long micros) {
+            long v = Math.max(0, Math.min(micros, MAX_VALUE));
+            counts.incrementAndGet(index(v));
+            total.increment();
+            sum.add(v);
+        }
+
+        static int index(long v) {
+            if (v < SUB) return (int) v;
+            int shift = 63 - Long.numberOfLeadingZeros(v) - SUB_BITS;
+            return SUB + shift * SUB + (int) (v >>> shift) - SUB;
+        }
+
+        // Largest value that maps to bucket i.
+        static long upperBound(int i) {
+            if (i < SUB) return i;
+            int shift = (i - SUB) / SUB, sub = (i - SUB) % SUB;
+            return ((long) (SUB + sub + 1) << shift) - 1;
+        }
+
+        long count() { return total.sum(); }
+
+        long sumMicros() { return sum.sum(); }
+
+        // Values for each quantile, read from one pass over a copy of the buckets.
+        long[] quantiles(double... qs) {
+            long[] snap = new long[counts.length()];
+            long n = 0;
+            for (int i = 0; i < snap.length; i++) { snap[i] = counts.get(i); n += snap[i]; }
+            long[] out = new long[qs.length];
+            for (int q = 0; q < qs.length; q++) {
+                long target = Math.max(1, (long) Math.ceil(qs[q] * n)), seen = 0;
+                for (int i = 0; i < snap.length && n > 0; i++) {
+                    seen += snap[i];
+                    if (seen >= target) { out[q] = upperBound(i); break; }
+                }
+            }
+            return out;
+        }
+    }
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    // components: name -> stats map from the rest of the server (pools, queues, caches), exported as gauges.
+    static String prometheus(Map<String, Map<String, Object>> components) {
+        StringBuilder sb = new StringBuilder(8192);
+        sb.append("# HELP hostel_http_requests_total Requests by endpoint and status code (none: no response sent).\n");
+        sb.append("# TYPE hostel_http_requests_total counter\n");
+        for (Endpoint e : endpoints) {
+            List<Integer> codes = new ArrayList<>(e.codes.keySet());
+            Collections.sort(codes);
+            for (Integer code : codes) {
+                sb.append("hostel_http_requests_total{endpoint=\"").append(e.path).append("\",code=\"").append(code < 0 ? "none" : code.toString()).append("\"} ")
+                        .append(e.codes.get(code).sum()).append('\n');
+            }
+        }
+        sb.append("# HELP hostel_http_request_duration_seconds Request latency, measured around the handler.\n");
+        sb.append("# TYPE hostel_http_request_duration_seconds summary\n");
+        for (Endpoint e : endpoints) {
+            if (e.latency.count() == 0) continue;
+            long[] q = e.latency.quantiles(QUANTILES);
+            for (int i = 0; i < QUANTILES.length; i++) {
+                sb.append("hostel_http_request_duration_seconds{endpoint=\"").append(e.path).append("\",quantile=\"").append(QUANTILES[i]).append("\"} ")
+                        .append(seconds(q[i] * 1000)).append('\n');
+            }
+            sb.append("hostel_http_request_duration_seconds_sum{endpoint=\"").append(e.path).append("\"} ").append(seconds(e.latency.sumMicros() * 1000)).append('\n');
+            sb.append("hostel_http_request_duration_seconds_count{endpoint=\"").append(e.path).append("\"} ").append(e.latency.count()).append('\n');
+        }
+        counterPerEndpoint(sb, "hostel_http_db_seconds_total", "Time requests spent holding a database connection.", true);
+        counterPerEndpoint(sb, "hostel_http_serialize_seconds_total", "Time requests spent encoding and writing JSON responses.", false);
+        sb.append("# HELP hostel_db_errors_total SQL errors answered with 500.\n# TYPE hostel_db_errors_total counter\n");
+        sb.append("hostel_db_errors_total ").append(dbErrors.sum()).append('\n');
+        for (Map.Entry<String, Map<String, Object>> c : components.entrySet()) gauges(sb, "hostel_" + c.getKey(), c.getValue());
+        return sb.toString();
+    }
+
+    private static void counterPerEndpoint(StringBuilder sb, String name, String help, boolean db) {
+        sb.append("# HELP ").append(name).append(' ').append(help).append("\n# TYPE ").append(name).append(" counter\n");
+        for (Endpoint e : endpoints) {
+            long nanos = (db ? e.dbNanos : e.writeNanos).sum();
+            if (nanos > 0) sb.append(name).append("{endpoint=\"").append(e.path).append("\"} ").append(seconds(nanos)).append('\n');
+        }
+    }
+
+    // Numbers become gauges named prefix_snake_case_key; a nested map adds a group label (e.g. the
+    // writer and reader pools). Samples are grouped by name, as the text format requires.
+    private static void gauges(StringBuilder sb, String prefix, Map<String, Object> stats) {
+        Map<String, StringBuilder> families = new LinkedHashMap<>();
+        collect(families, prefix, null, stats);
+        for (Map.Entry<String, StringBuilder> f : families.entrySet()) sb.append("# TYPE ").append(f.getKey()).append(" gauge\n").append(f.getValue());
+    }
+
+    private static void collect(Map<String, StringBuilder> families, String prefix, String group, Map<?, ?> stats) {
+        for (Map.Entry<?, ?> s : stats.entrySet()) {
+            Object v = s.getValue();
+            if (v instanceof Map) { collect(families, prefix, String.valueOf(s.getKey()), (Map<?, ?>) v); continue; }
+            if (!(v instanceof Number)) continue;
+            String name = prefix + "_" + snake(String.valueOf(s.getKey()));
+            StringBuilder lines = families.computeIfAbsent(name, k -> new StringBuilder());
+            lines.append(name);
+            if (group != null) lines.append("{group=\"").append(group).append("\"}");
+            lines.append(' ').append(v).append('\n');
+        }
+    }
+
+    private static String snake(String camel) {
+        StringBuilder sb = new StringBuilder(camel.length() + 4);
+        for (int i = 0; i < camel.length(); i++) {
+            char ch = camel.charAt(i);
+            if (Character.isUpperCase(ch)) sb.append('_').append(Character.toLowerCase(ch));
+            else sb.append(ch);
+        }
+        return sb.toString();
+    }
+
+    private static String seconds(long nanos) { return Double.toString(nanos / 1e9); }
+}
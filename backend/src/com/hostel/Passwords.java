@@ -0,0 +1,118 @@
+package com.hostel;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+// Salted PBKDF2-HMAC-SHA256 password hashes, stored as "pbkdf2-sha256$iterations$salt$hash" (Base64).
+// Hashing is deliberately slow, so it runs on its own fixed pool sized to the CPU count rather than on
+// request threads, with a bounded queue: when a login storm fills it, submit() returns null and the
+// caller answers 503 instead of letting the backlog grow. Rows that still hold a plaintext password,
+// or a hash with fewer iterations than configured, verify normally and are flagged for rehashing.
+class Passwords {
+    private static final String PREFIX = "pbkdf2-sha256$";
+    private static final int SALT_BYTES = 16;
+    private static final int KEY_BITS = 256;
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private static volatile int iterations = 120_000;
+    private static ThreadPoolExecutor pool;
+    private static String dummy;
+
+    private static final LongAdder hashed = new LongAdder();
+    private static final LongAdder verified = new LongAdder();
+    private static final LongAdder rejected = new LongAdder();
+    private static final LongAdder upgraded = new LongAdder();
+
+    record Check(boolean ok, boolean needsRehash) {}
+
+    static void init(int threads, int queue, int iterationCount) {
+        iterations = iterationCount;
+        dummy = hash(Long.toString(RANDOM.nextLong()));
+        AtomicInteger n = new AtomicInteger();
+        pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(queue),
+                r -> { Thread t = new Thread(r, "password-" + n.incrementAndGet()); t.setDaemon(true); return t; },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    // Runs work on the hashing pool; null when its queue is full.
+    static <T> CompletableFuture<T> submit(Supplier<T> work) {
+        try {
+            return CompletableFuture.supplyAsync(work, pool);
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            return null;
+        }
+    }
+
+    static String hash(String password) {
+        byte[] salt = new byte[SALT_BYTES];
+        RANDOM.nextBytes(salt);
+        int rounds = iterations;
+        byte[] key = pbkdf2(password, salt, rounds);
+        hashed.increment();
+        Base64.Encoder b64 = Base64.getEncoder().withoutPadding();
+        return PREFIX + rounds + "$" + b64.encodeToString(salt) + "$" + b64.encodeToString(key);
+    }
+
+    static Check verify(String password, String stored) {
+        verified.increment();
+        if (stored == null || password == null) return new Check(false, false);
+        if (!stored.startsWith(PREFIX)) {
+            // Legacy plaintext row.
+            boolean ok = MessageDigest.isEqual(stored.getBytes(StandardCharsets.UTF_8), password.getBytes(StandardCharsets.UTF_8));
+            return new Check(ok, ok);
+        }
+        String[] parts = stored.substring(PREFIX.length()).split("\\$");
+        if (parts.length != 3) return new Check(false, false);
+        int rounds = Integer.parseInt(parts[0]);
+        Base64.Decoder b64 = Base64.getDecoder();
+        byte[] expected = b64.decode(parts[2]);
+        boolean ok = MessageDigest.isEqual(expected, pbkdf2(password, b64.decode(parts[1]), rounds));
+        return new Check(ok, ok && rounds < iterations);
+    }
+
+    // A hash no password matches, checked for unknown emails so they take as long as wrong passwords.
+    static String dummyHash() { return dummy; }
+
+    static void upgraded() { upgraded.increment(); }
+
+    private static byte[] pbkdf2(String password, byte[] salt, int rounds) {
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, rounds, KEY_BITS);
+        try {
+            return SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256").generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("PBKDF2WithHmacSHA256 not available", e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+
+    static Map<String, Object> stats() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("iterations", iterations);
+        m.put("hashed", hashed.sum());
+        m.put("verified", verified.sum());
+        m.put("rejected", rejected.sum());
+        m.put("upgraded", upgraded.sum());
+        if (pool != null) {
+            m.put("active", pool.getActiveCount());
+            m.put("queued", pool.getQueue().size());
+        }
+        return m;
+    }
+
+    static void shutdown() {
+        if (pool != null) pool.shutdown();
+    }
+}
@@ -0,0 +1,90 @@
+package com.hostel;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// Per-client request limit for one endpoint, using GCRA (the generic cell rate algorithm: a token
+// bucket stored as a single number). Each key keeps only its theoretical arrival time (TAT), the
+// moment its bucket would be full again. A request is allowed while TAT - now is within the burst
+// tolerance and moves TAT one emission interval on; the update is a CAS on the key's AtomicLong, so a
+// check takes no lock. A key whose TAT has passed behaves exactly like a new one, so such entries are
+// swept out and memory follows the number of recently active clients. A request racing the sweep may
+// update an entry that was just dropped, which at worst lets that client start over with a full bucket.
+class RateLimiter {
+    private static final long SWEEP_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    // rate requests per period, and up to burst of them back to back. Written as 5/s:20 (also /m and /h);
+    // without ":burst" the burst is the rate.
+    record Limit(int rate, long periodNanos, int burst) {
+        static Limit parse(String spec) {
+            try {
+                int slash = spec.indexOf('/'), colon = spec.indexOf(':');
+                int rate = Integer.parseInt(spec.substring(0, slash).trim());
+                String unit = (colon < 0 ? spec.substring(slash + 1) : spec.substring(slash + 1, colon)).trim();
+                int burst = colon < 0 ? rate : Integer.parseInt(spec.substring(colon + 1).trim());
+                long period;
+                switch (unit) {
+                    case "s": period = TimeUnit.SECONDS.toNanos(1); break;
+                    case "m": period = TimeUnit.MINUTES.toNanos(1); break;
+                    case "h": period = TimeUnit.HOURS.toNanos(1); break;
+                    default: throw new IllegalArgumentException("unknown unit " + unit);
+                }
+                if (rate > 0 && burst > 0) return new Limit(rate, period, burst);
+            } catch (RuntimeException ignored) { }
+            throw new IllegalArgumentException("Rate limit must look like 5/s:20 (rate/unit[:burst], unit s, m or h): " + spec);
+        }
+
+        @Override
+        public String toString() {
+            String unit = periodNanos == TimeUnit.HOURS.toNanos(1) ? "h" : periodNanos == TimeUnit.MINUTES.toNanos(1) ? "m" : "s";
+            return rate + "/" + unit + ":" + burst;
+        }
+    }
+
+    final Limit limit;
+    private final long interval;
+    private final long tolerance;
+    private final ConcurrentHashMap<String, AtomicLong> tats = new ConcurrentHashMap<>();
+    private final AtomicLong nextSweep = new AtomicLong(System.nanoTime() + SWEEP_INTERVAL_NANOS);
+    private final LongAdder allowed = new LongAdder();
+    private final LongAdder limited = new LongAdder();
+
+    RateLimiter(Limit limit) {
+        this.limit = limit;
+        this.interval = Math.max(1, limit.periodNanos() / limit.rate());
+        this.tolerance = interval * (limit.burst() - 1);
+    }
+
+    // 0 when the request may go ahead, otherwise how many nanoseconds until it would be allowed.
+    long acquire(String key) {
+        long now = System.nanoTime();
+        sweep(now);
+        AtomicLong tat = tats.get(key);
+        if (tat == null) tat = tats.computeIfAbsent(key, k -> new AtomicLong(now));
+        while (true) {
+            long t = tat.get();
+            long base = t - now > 0 ? t : now;
+            long wait = base - now - tolerance;
+            if (wait > 0) { limited.increment(); return wait; }
+            if (tat.compareAndSet(t, base + interval)) { allowed.increment(); return 0; }
+        }
+    }
+
+    private void sweep(long now) {
+        long due = nextSweep.get();
+        if (now - due < 0 || !nextSweep.compareAndSet(due, now + SWEEP_INTERVAL_NANOS)) return;
+        tats.values().removeIf(t -> t.get() - now <= 0);
+    }
+
+    Map<String, Object> stats() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("allowed", allowed.sum());
+        m.put("limited", limited.sum());
+        m.put("clients", tats.size());
+        return m;
+    }
+}
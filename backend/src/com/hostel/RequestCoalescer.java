@@ -0,0 +1,96 @@
+package com.hostel;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+// Lets repeated requests share the result of the first instead of each starting its own work.
+// Entries are keyed by the caller (e.g. student plus Idempotency-Key, or student plus body hash) and
+// carry a fingerprint of the request body, so a key reused for a different request is reported as a
+// conflict rather than answered with someone else's result. An entry lives while its work is in
+// flight and for the linger time the caller gives finish(); expired entries are swept every few seconds.
+class RequestCoalescer<T> {
+    private static final long SWEEP_INTERVAL_MS = 5000;
+
+    enum Kind { NEW, SHARED, CONFLICT }
+
+    record Join<T>(T value, Kind kind) {}
+
+    private static final class Entry<T> {
+        final String fingerprint;
+        final T value;
+        volatile long expiresAt = Long.MAX_VALUE;
+
+        Entry(String fingerprint, T value) { this.fingerprint = fingerprint; this.value = value; }
+    }
+
+    private final ConcurrentHashMap<String, Entry<T>> entries = new ConcurrentHashMap<>();
+    private final AtomicLong nextSweep = new AtomicLong(System.currentTimeMillis() + SWEEP_INTERVAL_MS);
+    private final LongAdder started = new LongAdder();
+    private final LongAdder shared = new LongAdder();
+    private final LongAdder conflicts = new LongAdder();
+
+    // The live value under key, or a new one from start (registered under key). Returns null, and
+    // registers nothing, when start does. Two first requests racing may both call start, so it must
+    // be safe to repeat; the later registration wins.
+    Join<T> join(String key, String fingerprint, Supplier<T> start) {
+        long now = System.currentTimeMillis();
+        sweep(now);
+        Entry<T> e = entries.get(key);
+        if (e != null && e.expiresAt > now) {
+            if (!e.fingerprint.equals(fingerprint)) { conflicts.increment(); return new Join<>(e.value, Kind.CONFLICT); }
+            shared.increment();
+            return new Join<>(e.value, Kind.SHARED);
+        }
+        T value = start.get();
+        if (value == null) return null;
+        entries.put(key, new Entry<>(fingerprint, value));
+        started.increment();
+        return new Join<>(value, Kind.NEW);
+    }
+
+    // The work behind value is done; later requests under key still get it for lingerMillis.
+    void finish(String key, T value, long lingerMillis) {
+        Entry<T> e = entries.get(key);
+        if (e == null || e.value != value) return;
+        if (lingerMillis <= 0) entries.remove(key, e);
+        else e.expiresAt = System.currentTimeMillis() + lingerMillis;
+    }
+
+    // Drops the entries whose key starts with prefix, e.g. once what they answered is no longer true.
+    void forget(String prefix) {
+        entries.keySet().removeIf(k -> k.startsWith(prefix));
+    }
+
+    private void sweep(long now) {
+        long due = nextSweep.get();
+        if (now < due || !nextSweep.compareAndSet(due, now + SWEEP_INTERVAL_MS)) return;
+        entries.values().removeIf(e -> e.expiresAt <= now);
+    }
+
+    Map<String, Object> stats() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("entries", entries.size());
+        m.put("started", started.sum());
+        m.put("shared", shared.sum());
+        m.put("conflicts", conflicts.sum());
+        return m;
+    }
+
+    // Hex SHA-256 of a request body.
+    static String fingerprint(byte[] body) {
+        try {
+            byte[] d = MessageDigest.getInstance("SHA-256").digest(body);
+            StringBuilder sb = new StringBuilder(64);
+            for (byte b : d) sb.append(String.format("%02x", b));
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
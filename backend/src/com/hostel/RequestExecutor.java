@@ -0,0 +1,71 @@
+package com.hostel;
+
+import java.lang.reflect.Method;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+// Runs HttpServer exchanges off the dispatcher thread.
+// In POOL mode the queue is bounded: when it is full the exchange is run on the dispatcher
+// thread with the shedding flag set, and Main answers 503 without doing any real work.
+class RequestExecutor {
+    private static final ThreadLocal<Boolean> SHEDDING = new ThreadLocal<>();
+    private static final LongAdder shed = new LongAdder();
+    private static ExecutorService executor;
+    private static ThreadPoolExecutor pool;
+
+    static Executor create(ServerConfig config) {
+        switch (config.executor) {
+            case DISPATCHER:
+                return null;
+            case VIRTUAL:
+                executor = virtualThreadExecutor();
+                if (executor != null) return executor;
+                System.out.println("Virtual threads need Java 21+; falling back to a bounded pool");
+                break;
+            default:
+                break;
+        }
+        AtomicInteger n = new AtomicInteger();
+        pool = new ThreadPoolExecutor(config.threads, config.threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(config.queue),
+                r -> { Thread t = new Thread(r, "http-" + n.incrementAndGet()); t.setDaemon(true); return t; },
+                (r, ex) -> shed(r));
+        executor = pool;
+        return pool;
+    }
+
+    private static ExecutorService virtualThreadExecutor() {
+        try {
+            Method m = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) m.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    private static void shed(Runnable r) {
+        shed.increment();
+        SHEDDING.set(Boolean.TRUE);
+        try { r.run(); } finally { SHEDDING.remove(); }
+    }
+
+    static boolean isShedding() { return SHEDDING.get() != null; }
+
+    static Map<String, Object> stats() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("shed", shed.sum());
+        if (pool != null) {
+            m.put("active", pool.getActiveCount());
+            m.put("queued", pool.getQueue().size());
+            m.put("completed", pool.getCompletedTaskCount());
+        }
+        return m;
+    }
+
+    static void shutdown() {
+        if (executor != null) executor.shutdown();
+    }
+}
@@ -0,0 +1,94 @@
+package com.hostel;
+
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+
+// Response body stream that holds back sendResponseHeaders until it knows the size:
+// a body that fits in the buffer is sent with a Content-Length, a larger one switches
+// to chunked transfer and is streamed as it is written. When the client accepts gzip,
+// bodies of at least ContentEncoding.GZIP_MIN_BYTES are compressed (buffered ones whole,
+// streamed ones through a GZIPOutputStream); smaller ones go out as they are.
+// A body that fails halfway is abort()ed rather than closed, so it is never passed off as complete.
+class ResponseStream extends OutputStream {
+    static final int DEFAULT_BUFFER = 16 * 1024;
+
+    private final HttpExchange ex;
+    private final int status;
+    private final boolean gzip;
+    private byte[] buf;
+    private int pos;
+    private OutputStream out;
+    private boolean closed;
+    private boolean aborted;
+
+    ResponseStream(HttpExchange ex, int status) { this(ex, status, DEFAULT_BUFFER); }
+
+    ResponseStream(HttpExchange ex, int status, int bufferSize) {
+        this.ex = ex; this.status = status; this.buf = new byte[bufferSize];
+        this.gzip = ContentEncoding.acceptsGzip(ex);
+        ex.getResponseHeaders().set("Vary", "Accept-Encoding");
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (aborted) return;
+        if (out == null && pos < buf.length) { buf[pos++] = (byte) b; return; }
+        stream().write(b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (aborted) return;
+        if (out == null && pos + len <= buf.length) { System.arraycopy(b, off, buf, pos, len); pos += len; return; }
+        stream().write(b, off, len);
+    }
+
+    // Buffered bytes are only committed on close or overflow, so flush() never forces chunking.
+    @Override
+    public void flush() throws IOException {
+        if (out != null && !aborted) out.flush();
+    }
+
+    // Drops the body: nothing more is written, and close() no longer sends anything. True when nothing
+    // had been sent yet, so the exchange can still carry an error response; otherwise the status and
+    // part of the body are out and the caller can only cut the connection off.
+    boolean abort() {
+        if (closed) return false;
+        closed = aborted = true;
+        buf = null;
+        return out == null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        if (out == null) {
+            byte[] body = buf;
+            int len = pos;
+            if (gzip && pos >= ContentEncoding.GZIP_MIN_BYTES) {
+                byte[] gz = ContentEncoding.gzip(buf, pos);
+                if (gz.length < pos) { ex.getResponseHeaders().set("Content-Encoding", "gzip"); body = gz; len = gz.length; }
+            }
+            ex.sendResponseHeaders(status, len == 0 ? -1 : len);
+            try (OutputStream os = ex.getResponseBody()) { if (len > 0) os.write(body, 0, len); }
+        } else {
+            out.close();
+        }
+        buf = null;
+    }
+
+    private OutputStream stream() throws IOException {
+        if (out == null) {
+            if (gzip) ex.getResponseHeaders().set("Content-Encoding", "gzip");
+            ex.sendResponseHeaders(status, 0);
+            out = gzip ? new GZIPOutputStream(ex.getResponseBody(), 8192) : ex.getResponseBody();
+            out.write(buf, 0, pos);
+            buf = null;
+        }
+        return out;
+    }
+}
@@ -0,0 +1,98 @@
+package com.hostel;
+
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntConsumer;
+
+// In-memory copy of the rooms table, loaded once at startup and kept in step by the code paths that
+// change rooms (BookingService and the admin room endpoint). GET /api/rooms is served from a
+// pre-serialised snapshot that is rebuilt only after a change, with the version number as its ETag.
+// Booking changes are applied as deltas, which commute, so concurrent commits cannot leave a stale count.
+// A snapshot large enough to be worth it also carries a gzipped copy, compressed once per version.
+class RoomCache {
+    record Room(int id, String roomNumber, int capacity, int available) {
+        Map<String, Object> toMap() {
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("id", id); m.put("roomNumber", roomNumber); m.put("capacity", capacity); m.put("available", available);
+            return m;
+        }
+    }
+
+    record Snapshot(long version, String etag, byte[] json, byte[] gzip) {}
+
+    private static final Comparator<Room> BY_NUMBER = Comparator.comparing(Room::roomNumber);
+    private static final String BOOT_ID = Long.toString(ThreadLocalRandom.current().nextLong() & Long.MAX_VALUE, 36);
+    private static final ConcurrentHashMap<Integer, Room> rooms = new ConcurrentHashMap<>();
+    private static final AtomicLong version = new AtomicLong();
+    private static volatile Snapshot snapshot;
+    private static final List<IntConsumer> listeners = new CopyOnWriteArrayList<>();
+
+    static void load() throws SQLException {
+        Map<Integer, Room> fresh = new HashMap<>();
+        try (Connection c = Database.getReadConnection()) {
+            try (PreparedStatement ps = c.prepareStatement("SELECT id,room_number,capacity,available FROM rooms")) {
+                ResultSet rs = ps.executeQuery();
+                while (rs.next()) {
+                    Room r = new Room(rs.getInt("id"), rs.getString("room_number"), rs.getInt("capacity"), rs.getInt("available"));
+                    fresh.put(r.id(), r);
+                }
+            }
+        }
+        rooms.clear();
+        rooms.putAll(fresh);
+        version.incrementAndGet();
+    }
+
+    // Loads rooms rebuilt elsewhere (the EventLog) instead of reading the table.
+    static void load(Collection<Room> rebuilt) {
+        rooms.clear();
+        for (Room r : rebuilt) rooms.put(r.id(), r);
+        version.incrementAndGet();
+    }
+
+    // Listeners are told the id of every changed room; they must not block. They get no Room: changes from
+    // different threads can reach them in either order, so a value passed along could be the older one.
+    // A listener that reads get() after being told sees the room at least as new as its own change, and
+    // the last listener call for a room always sees its latest state.
+    static void addListener(IntConsumer listener) { listeners.add(listener); }
+
+    // Call after the change has been committed.
+    static void adjust(int roomId, int delta) {
+        Room r = rooms.computeIfPresent(roomId, (id, old) -> new Room(id, old.roomNumber(), old.capacity(), old.available() + delta));
+        if (r != null) changed(roomId);
+    }
+
+    static void put(Room room) {
+        rooms.put(room.id(), room);
+        changed(room.id());
+    }
+
+    private static void changed(int roomId) {
+        version.incrementAndGet();
+        for (IntConsumer l : listeners) l.accept(roomId);
+    }
+
+    static Room get(int roomId) { return rooms.get(roomId); }
+
+    static List<Room> list() {
+        List<Room> list = new ArrayList<>(rooms.values());
+        list.sort(BY_NUMBER);
+        return list;
+    }
+
+    static Snapshot snapshot() {
+        Snapshot s = snapshot;
+        long v = version.get();
+        if (s != null && s.version() == v) return s;
+        List<Map<String, Object>> out = new ArrayList<>();
+        for (Room r : list()) out.add(r.toMap());
+        byte[] json = Json.toBytes(Collections.singletonMap("rooms", out));
+        s = new Snapshot(v, "\"" + BOOT_ID + "-" + v + "\"", json, ContentEncoding.gzipIfSmaller(json));
+        snapshot = s;
+        return s;
+    }
+}
@@ -0,0 +1,173 @@
+package com.hostel;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Secondary index over RoomCache for room search and preference-based allocation.
+// Every room gets a dense slot number; one BitSet per block, per floor and per capacity, plus one of
+// the rooms with a free seat, answer a query by AND-ing (and for capacity ranges OR-ing) a handful of
+// bitsets instead of scanning rooms. Block and floor come from the room number: leading letters are
+// the block and the hundreds of the number that follows are the floor, so A101 is block A, floor 1.
+// Kept current through a RoomCache listener; readers share a read lock.
+class RoomIndex {
+    // A query; null fields match anything. Also one entry of a student's ranked preferences.
+    record Filter(String block, Integer floor, Integer minCapacity, Integer maxCapacity) {}
+
+    // Seats are tried in this many rooms at most per allocation, across all preferences.
+    static final int MAX_ATTEMPTS = 16;
+
+    private static final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private static final Map<Integer, Integer> slotOf = new HashMap<>();
+    private static final List<RoomCache.Room> bySlot = new ArrayList<>();
+    private static final Map<String, BitSet> byBlock = new HashMap<>();
+    private static final Map<Integer, BitSet> byFloor = new HashMap<>();
+    private static final TreeMap<Integer, BitSet> byCapacity = new TreeMap<>();
+    private static final BitSet free = new BitSet();
+
+    // Indexes what RoomCache holds now and follows its changes from then on.
+    static void build() {
+        lock.writeLock().lock();
+        try {
+            slotOf.clear(); bySlot.clear(); byBlock.clear(); byFloor.clear(); byCapacity.clear(); free.clear();
+            for (RoomCache.Room r : RoomCache.list()) put(r);
+        } finally { lock.writeLock().unlock(); }
+        RoomCache.addListener(RoomIndex::update);
+    }
+
+    // Reads the room back from the cache rather than trusting an argument that may be older (see addListener).
+    private static void update(int roomId) {
+        lock.writeLock().lock();
+        try {
+            RoomCache.Room r = RoomCache.get(roomId);
+            if (r != null) put(r);
+        } finally { lock.writeLock().unlock(); }
+    }
+
+    private static void put(RoomCache.Room r) {
+        Integer slot = slotOf.get(r.id());
+        if (slot == null) {
+            slot = bySlot.size();
+            slotOf.put(r.id(), slot);
+            bySlot.add(r);
+            byBlock.computeIfAbsent(block(r.roomNumber()), k -> new BitSet()).set(slot);
+            byFloor.computeIfAbsent(floor(r.roomNumber()), k -> new BitSet()).set(slot);
+            byCapacity.computeIfAbsent(r.capacity(), k -> new BitSet()).set(slot);
+        } else {
+            bySlot.set(slot, r);
+        }
+        free.set(slot, r.available() > 0);
+    }
+
+    static String block(String roomNumber) {
+        int i = 0;
+        while (i < roomNumber.length() && Character.isLetter(roomNumber.charAt(i))) i++;
+        return roomNumber.substring(0, i).toUpperCase();
+    }
+
+    static int floor(String roomNumber) {
+        int i = block(roomNumber).length(), n = 0;
+        while (i < roomNumber.length() && !Character.isDigit(roomNumber.charAt(i))) i++;
+        while (i < roomNumber.length() && Character.isDigit(roomNumber.charAt(i)) && n < 100_000_000) n = n * 10 + (roomNumber.charAt(i++) - '0');
+        return n / 100;
+    }
+
+    // Matching rooms ordered by room number; only ones with a free seat unless includeFull.
+    static List<RoomCache.Room> search(Filter f, boolean includeFull, int limit) {
+        List<RoomCache.Room> out = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            BitSet m = match(f, !includeFull);
+            for (int s = m.nextSetBit(0); s >= 0; s = m.nextSetBit(s + 1)) out.add(bySlot.get(s));
+        } finally { lock.readLock().unlock(); }
+        out.sort(Comparator.comparing(RoomCache.Room::roomNumber));
+        return out.size() > limit ? new ArrayList<>(out.subList(0, limit)) : out;
+    }
+
+    static int count(Filter f, boolean includeFull) {
+        lock.readLock().lock();
+        try { return match(f, !includeFull).cardinality(); } finally { lock.readLock().unlock(); }
+    }
+
+    private static BitSet match(Filter f, boolean freeOnly) {
+        BitSet m = freeOnly ? (BitSet) free.clone() : all();
+        if (f.block() != null) and(m, byBlock.get(f.block().toUpperCase()));
+        if (f.floor() != null) and(m, byFloor.get(f.floor()));
+        if (f.minCapacity() != null || f.maxCapacity() != null) {
+            BitSet caps = new BitSet();
+            int lo = f.minCapacity() != null ? f.minCapacity() : Integer.MIN_VALUE, hi = f.maxCapacity() != null ? f.maxCapacity() : Integer.MAX_VALUE;
+            if (lo <= hi) for (BitSet b : byCapacity.subMap(lo, true, hi, true).values()) caps.or(b);
+            m.and(caps);
+        }
+        return m;
+    }
+
+    private static BitSet all() {
+        BitSet b = new BitSet(bySlot.size());
+        b.set(0, bySlot.size());
+        return b;
+    }
+
+    private static void and(BitSet m, BitSet b) {
+        if (b == null) m.clear(); else m.and(b);
+    }
+
+    // Rooms worth trying for one preference, best first: fewest free seats (fill rooms up before
+    // starting empty ones), then room number. batchSeats overrides the free seats of rooms booked
+    // earlier in the same uncommitted transaction, which the index only learns about after the commit.
+    static List<RoomCache.Room> candidates(Filter f, int max, Map<Integer, Integer> batchSeats) {
+        List<RoomCache.Room> out = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            BitSet m = match(f, true);
+            for (int s = m.nextSetBit(0); s >= 0; s = m.nextSetBit(s + 1)) {
+                RoomCache.Room r = bySlot.get(s);
+                Integer seats = batchSeats.get(r.id());
+                if (seats == null) out.add(r);
+                else if (seats > 0) out.add(new RoomCache.Room(r.id(), r.roomNumber(), r.capacity(), seats));
+            }
+        } finally { lock.readLock().unlock(); }
+        out.sort(Comparator.comparingInt(RoomCache.Room::available).thenComparing(RoomCache.Room::roomNumber));
+        return out.size() > max ? out.subList(0, max) : out;
+    }
+
+    record Allocation(BookingService.Result result, int preference) {}
+
+    // Books the best free room for the first preference that has one, inside the caller's transaction.
+    // batchSeats holds what this transaction has seen of each room it booked so far (see seen()), so
+    // rooms it already filled are not offered again and do not use up attempts. A room that still turns
+    // out to be full (booked outside the batch since the index was updated) is skipped for the next.
+    static Allocation allocate(Connection c, int studentId, List<Filter> preferences, Map<Integer, Integer> batchSeats) throws SQLException {
+        Set<Integer> tried = new HashSet<>();
+        for (int p = 0; p < preferences.size() && tried.size() < MAX_ATTEMPTS; p++) {
+            for (RoomCache.Room r : candidates(preferences.get(p), MAX_ATTEMPTS, batchSeats)) {
+                if (!tried.add(r.id())) continue;
+                BookingService.Result res = BookingService.book(c, studentId, r.id());
+                seen(batchSeats, r.id(), res);
+                if (res.status() != BookingService.Status.NOT_AVAILABLE) return new Allocation(res, p + 1);
+                if (tried.size() >= MAX_ATTEMPTS) break;
+            }
+        }
+        return new Allocation(BookingService.Result.of(BookingService.Status.NOT_AVAILABLE), 0);
+    }
+
+    // Records the free seats a booking attempt inside the transaction left in roomId.
+    static void seen(Map<Integer, Integer> batchSeats, int roomId, BookingService.Result res) {
+        if (res.status() == BookingService.Status.BOOKED) batchSeats.put(roomId, res.available());
+        else if (res.status() == BookingService.Status.NOT_AVAILABLE) batchSeats.put(roomId, 0);
+    }
+
+    static Map<String, Object> stats() {
+        lock.readLock().lock();
+        try {
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("rooms", bySlot.size());
+            m.put("free", free.cardinality());
+            m.put("blocks", byBlock.size());
+            m.put("floors", byFloor.size());
+            m.put("capacities", byCapacity.size());
+            return m;
+        } finally { lock.readLock().unlock(); }
+    }
+}
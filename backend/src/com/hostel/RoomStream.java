@@ -0,0 +1,221 @@
+package com.hostel;
+
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// Server-Sent Events feed for GET /api/rooms/stream.
+// A new subscriber first gets a "snapshot" event with the full room list, then "rooms" events holding
+// only the rooms that changed. Changes are collected for FLUSH_MS and encoded once per flush, so a burst
+// of bookings costs one frame per subscriber, not one per booking. An idle subscriber holds only its
+// exchange and an empty queue, no thread. Each subscriber has a bounded queue drained by a small
+// writer pool; a client whose queue fills up is disconnected (it reconnects and gets a fresh snapshot).
+// Writes block, and so does closing an exchange whose client stopped reading, so neither happens on the
+// ticker: the exchange is closed on a writer thread, after any write in progress. A write still blocked
+// after WRITE_TIMEOUT_MS is abandoned: the subscriber is dropped and the pool gets a thread to replace
+// the stuck one until that write returns.
+class RoomStream {
+    private static final long FLUSH_MS = 200;
+    private static final long HEARTBEAT_MS = 15_000;
+    private static final long WRITE_TIMEOUT_MS = 5_000;
+    private static final int QUEUE_LIMIT = 32;
+    private static final byte[] HEARTBEAT = ": ping\n\n".getBytes(StandardCharsets.UTF_8);
+
+    // One permit per subscriber allowed; taken before the response starts, given back when it closes.
+    private final Semaphore slots;
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final Set<Subscriber> draining = ConcurrentHashMap.newKeySet();
+    private final Set<Integer> pending = ConcurrentHashMap.newKeySet();
+    private final ThreadPoolExecutor writers;
+    private final ScheduledExecutorService ticker;
+    private final LongAdder disconnected = new LongAdder();
+    private final LongAdder slowDropped = new LongAdder();
+    private final LongAdder stalled = new LongAdder();
+    private final LongAdder framesSent = new LongAdder();
+    private volatile long lastFrameAt = System.currentTimeMillis();
+
+    RoomStream(int maxSubscribers, int writerThreads) {
+        this.slots = new Semaphore(maxSubscribers);
+        AtomicInteger n = new AtomicInteger();
+        writers = new ThreadPoolExecutor(writerThreads, writerThreads, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(),
+                r -> { Thread t = new Thread(r, "sse-writer-" + n.incrementAndGet()); t.setDaemon(true); return t; });
+        ticker = Executors.newSingleThreadScheduledExecutor(r -> { Thread t = new Thread(r, "sse-ticker"); t.setDaemon(true); return t; });
+        ticker.scheduleWithFixedDelay(this::tick, FLUSH_MS, FLUSH_MS, TimeUnit.MILLISECONDS);
+    }
+
+    // RoomCache listener; may be called from any thread. The room is read when the frame is built.
+    void publish(int roomId) {
+        pending.add(roomId);
+    }
+
+    void subscribe(HttpExchange ex) throws IOException {
+        if (!slots.tryAcquire()) {
+            ex.getResponseHeaders().set("Retry-After", "5");
+            ex.sendResponseHeaders(503, -1);
+            ex.close();
+            return;
+        }
+        ex.getResponseHeaders().set("Content-Type", "text/event-stream; charset=utf-8");
+        ex.getResponseHeaders().set("Cache-Control", "no-cache");
+        ex.getResponseHeaders().set("X-Accel-Buffering", "no");
+        try {
+            ex.sendResponseHeaders(200, 0);
+        } catch (IOException | RuntimeException e) {
+            slots.release();
+            throw e;
+        }
+        Subscriber s = new Subscriber(ex);
+        subscribers.add(s);
+        RoomCache.Snapshot snap = RoomCache.snapshot();
+        s.offer(frame("retry: 3000\nid: " + snap.version() + "\nevent: snapshot", snap.json()));
+    }
+
+    Map<String, Object> stats() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("subscribers", subscribers.size());
+        m.put("framesSent", framesSent.sum());
+        m.put("disconnected", disconnected.sum());
+        m.put("slowDropped", slowDropped.sum());
+        m.put("stalled", stalled.sum());
+        m.put("writerThreads", writers.getCorePoolSize());
+        return m;
+    }
+
+    void stop() {
+        ticker.shutdownNow();
+        for (Subscriber s : subscribers) s.drop();
+        // Not shutdownNow: the closes drop() queued still have to run.
+        writers.shutdown();
+    }
+
+    private void tick() {
+        try {
+            long now = System.currentTimeMillis();
+            abandonStalled(now);
+            if (!pending.isEmpty()) {
+                List<Map<String, Object>> changed = new ArrayList<>();
+                for (Integer id : new ArrayList<>(pending)) {
+                    pending.remove(id);
+                    RoomCache.Room r = RoomCache.get(id);
+                    if (r != null) changed.add(r.toMap());
+                }
+                if (!changed.isEmpty()) broadcast(frame("event: rooms", Json.toBytes(changed)));
+            } else if (now - lastFrameAt >= HEARTBEAT_MS) {
+                broadcast(HEARTBEAT);
+            }
+        } catch (RuntimeException e) {
+            System.err.println("Room stream tick failed: " + e.getMessage());
+        }
+    }
+
+    private void abandonStalled(long now) {
+        for (Subscriber s : draining) {
+            long t = s.writeStartedAt.get();
+            if (t > 0 && now - t > WRITE_TIMEOUT_MS && s.writeStartedAt.compareAndSet(t, -1)) {
+                stalled.increment();
+                resizeWriters(1);
+                s.drop();
+            }
+        }
+    }
+
+    private synchronized void resizeWriters(int delta) {
+        int n = writers.getCorePoolSize() + delta;
+        if (delta > 0) { writers.setMaximumPoolSize(n); writers.setCorePoolSize(n); }
+        else { writers.setCorePoolSize(n); writers.setMaximumPoolSize(n); }
+    }
+
+    private void broadcast(byte[] frame) {
+        lastFrameAt = System.currentTimeMillis();
+        for (Subscriber s : subscribers) s.offer(frame);
+    }
+
+    private static byte[] frame(String header, byte[] data) {
+        byte[] head = (header + "\ndata: ").getBytes(StandardCharsets.UTF_8);
+        byte[] out = new byte[head.length + data.length + 2];
+        System.arraycopy(head, 0, out, 0, head.length);
+        System.arraycopy(data, 0, out, head.length, data.length);
+        out[out.length - 2] = '\n'; out[out.length - 1] = '\n';
+        return out;
+    }
+
+    private final class Subscriber {
+        private final HttpExchange ex;
+        private final OutputStream os;
+        private final ArrayBlockingQueue<byte[]> queue = new ArrayBlockingQueue<>(QUEUE_LIMIT);
+        // Whoever sets scheduled owns the exchange until clearing it: a drain, or the close after drop().
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private final AtomicBoolean closed = new AtomicBoolean();
+        // When the write in progress started, 0 between writes, -1 once the ticker abandoned it.
+        private final AtomicLong writeStartedAt = new AtomicLong();
+
+        Subscriber(HttpExchange ex) { this.ex = ex; this.os = ex.getResponseBody(); }
+
+        void offer(byte[] frame) {
+            if (closed.get()) return;
+            if (!queue.offer(frame)) { slowDropped.increment(); drop(); return; }
+            if (scheduled.compareAndSet(false, true)) schedule(this::drain);
+        }
+
+        private void schedule(Runnable task) {
+            try { writers.execute(task); }
+            catch (RejectedExecutionException e) { if (closed.compareAndSet(false, true)) release(); ex.close(); }
+        }
+
+        private void drain() {
+            draining.add(this);
+            try {
+                byte[] f;
+                while (!closed.get() && (f = queue.poll()) != null) { if (write(f)) framesSent.increment(); }
+                if (!closed.get()) write(null);
+            } catch (IOException e) {
+                drop();
+            } finally {
+                draining.remove(this);
+            }
+            // Dropped while writing: the close was left to this drain.
+            if (closed.get()) { ex.close(); return; }
+            scheduled.set(false);
+            // A frame may have arrived after the last poll but before scheduled was cleared.
+            if (!queue.isEmpty() && scheduled.compareAndSet(false, true)) schedule(this::drain);
+        }
+
+        // Writes a frame (flushes for null) and reports whether the subscriber is still open. If the
+        // ticker abandoned the write meanwhile, its replacement writer thread is given back.
+        private boolean write(byte[] frame) throws IOException {
+            long t = System.currentTimeMillis();
+            writeStartedAt.set(t);
+            try {
+                if (frame != null) os.write(frame);
+                else os.flush();
+            } finally {
+                if (!writeStartedAt.compareAndSet(t, 0)) resizeWriters(-1);
+            }
+            return !closed.get();
+        }
+
+        // Stops sending to this subscriber without blocking: the exchange is closed on a writer thread,
+        // by the drain in progress if there is one.
+        void drop() {
+            if (!closed.compareAndSet(false, true)) return;
+            release();
+            disconnected.increment();
+            queue.clear();
+            if (scheduled.compareAndSet(false, true)) schedule(ex::close);
+        }
+
+        // Once per subscriber, by whoever moved it to closed.
+        private void release() {
+            subscribers.remove(this);
+            slots.release();
+        }
+    }
+}
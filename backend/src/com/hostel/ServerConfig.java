@@ -0,0 +1,168 @@
+package com.hostel;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Startup options, given as --name=value flags, e.g.
+//   java com.hostel.Main --port=9090 --db=data/hostel.db --executor=pool --threads=32 --queue=500
+class ServerConfig {
+    enum ExecutorMode { DISPATCHER, POOL, VIRTUAL }
+
+    int port = 8080;
+    String dbPath = "data/hostel.db";
+    int readers = Math.max(2, Runtime.getRuntime().availableProcessors());
+    ExecutorMode executor = ExecutorMode.POOL;
+    int threads = Math.max(8, Runtime.getRuntime().availableProcessors() * 4);
+    int queue = 1000;
+    int sessionTtlMinutes = 12 * 60;
+    int sessionIdleMinutes = 2 * 60;
+    int maxSessions = 100_000;
+    boolean persistSessions = true;
+    int maxStreamClients = 10_000;
+    boolean explainQueries = false;
+    int bookingQueue = 10_000;
+    int bookingBatch = 64;
+    int hashThreads = Runtime.getRuntime().availableProcessors();
+    int hashQueue = 1000;
+    int hashIterations = 120_000;
+    boolean credentialCache = true;
+    String staticDir = "../frontend";
+    String eventLog = "";
+    int snapshotEvery = 10_000;
+    boolean checkConsistency = false;
+    // Per-endpoint request limits (see rateLimitsByPath), added to or overriding the defaults.
+    String rateLimits = "";
+    // Reverse proxies whose X-Forwarded-For is believed (see clientAddress), as IP addresses.
+    Set<String> trustedProxies = Set.of();
+
+    // Login attempts per address and email; the /api/login limit itself is per address only and is kept
+    // loose, since a whole hall of students can share one NAT address.
+    static final String LOGIN_ACCOUNT_LIMIT = "login-account";
+    // The frontend files, the room list and the room stream are fetched without a token (EventSource cannot
+    // send one), so a limit there would be per address and shared by everyone behind a NAT. They are left
+    // out: the room list is a cached snapshot and the stream has its own cap, --max-stream-clients.
+    static final String DEFAULT_RATE_LIMITS = "*=20/s:40,/=off,/api/rooms=off,/api/rooms/stream=off,/api/login=300/m:60," + LOGIN_ACCOUNT_LIMIT + "=10/m:5,/api/register=60/m:20,/api/book=2/s:5";
+
+    static ServerConfig parse(String[] args) {
+        Map<String, String> opts = new LinkedHashMap<>();
+        for (String a : args) {
+            if (!a.startsWith("--")) throw new IllegalArgumentException("Unexpected argument: " + a);
+            int eq = a.indexOf('=');
+            if (eq < 0) opts.put(a.substring(2), "true");
+            else opts.put(a.substring(2, eq), a.substring(eq + 1));
+        }
+        ServerConfig c = new ServerConfig();
+        for (Map.Entry<String, String> e : opts.entrySet()) c.set(e.getKey(), e.getValue());
+        return c;
+    }
+
+    void set(String key, String value) {
+        switch (key) {
+            case "port": port = positiveInt(key, value); break;
+            case "db": dbPath = value; break;
+            case "readers": readers = positiveInt(key, value); break;
+            case "executor": executor = ExecutorMode.valueOf(value.toUpperCase()); break;
+            case "threads": threads = positiveInt(key, value); break;
+            case "queue": queue = positiveInt(key, value); break;
+            case "session-ttl": sessionTtlMinutes = positiveInt(key, value); break;
+            case "session-idle": sessionIdleMinutes = positiveInt(key, value); break;
+            case "max-sessions": maxSessions = positiveInt(key, value); break;
+            case "persist-sessions": persistSessions = Boolean.parseBoolean(value); break;
+            case "max-stream-clients": maxStreamClients = positiveInt(key, value); break;
+            case "explain-queries": explainQueries = Boolean.parseBoolean(value); break;
+            case "booking-queue": bookingQueue = positiveInt(key, value); break;
+            case "booking-batch": bookingBatch = positiveInt(key, value); break;
+            case "hash-threads": hashThreads = positiveInt(key, value); break;
+            case "hash-queue": hashQueue = positiveInt(key, value); break;
+            case "hash-iterations": hashIterations = positiveInt(key, value); break;
+            case "credential-cache": credentialCache = Boolean.parseBoolean(value); break;
+            case "static": staticDir = value; break;
+            case "event-log": eventLog = value; break;
+            case "snapshot-every": snapshotEvery = positiveInt(key, value); break;
+            case "check-consistency": checkConsistency = Boolean.parseBoolean(value); break;
+            case "rate-limits": rateLimits = value; rateLimitsByPath(); break;
+            case "trusted-proxies": trustedProxies = ipSet(key, value); break;
+            default: throw new IllegalArgumentException("Unknown option --" + key);
+        }
+    }
+
+    private static int positiveInt(String key, String value) {
+        try {
+            int n = Integer.parseInt(value);
+            if (n > 0) return n;
+        } catch (NumberFormatException ignored) { }
+        throw new IllegalArgumentException("--" + key + " must be a positive integer");
+    }
+
+    // The event log lives next to the database unless --event-log names a file ("none" turns it off).
+    Path eventLogPath() {
+        if (eventLog.equals("none")) return null;
+        if (!eventLog.isEmpty()) return Paths.get(eventLog);
+        Path db = Paths.get(dbPath).toAbsolutePath();
+        return db.resolveSibling("events.log");
+    }
+
+    private static Set<String> ipSet(String key, String value) {
+        Set<String> s = new HashSet<>();
+        for (String ip : value.split(",")) {
+            if (ip.isBlank()) continue;
+            String normal = ipLiteral(ip.trim());
+            if (normal == null) throw new IllegalArgumentException("--" + key + " takes IP addresses, not " + ip.trim());
+            s.add(normal);
+        }
+        return s;
+    }
+
+    // The address in the form InetAddress prints it, or null if s is not an IP literal (never a DNS lookup).
+    static String ipLiteral(String s) {
+        if (s.isEmpty() || !s.matches("[0-9a-fA-F:.]+") || s.indexOf(':') < 0 && !s.matches("[0-9.]+")) return null;
+        try { return InetAddress.getByName(s).getHostAddress(); }
+        catch (UnknownHostException e) { return null; }
+    }
+
+    // The client behind a request from remote: remote itself, unless it is a trusted proxy. Then it is the
+    // nearest X-Forwarded-For hop that is not a trusted proxy, since entries further left are only what the
+    // client claimed.
+    String clientAddress(String remote, List<String> forwardedFor) {
+        if (!trustedProxies.contains(remote) || forwardedFor == null) return remote;
+        String client = remote;
+        String[] hops = String.join(",", forwardedFor).split(",");
+        for (int i = hops.length - 1; i >= 0; i--) {
+            String hop = hops[i].trim();
+            if (hop.isEmpty()) continue;
+            String ip = ipLiteral(hop);
+            if (ip == null || !trustedProxies.contains(ip)) return ip != null ? ip : hop;
+            client = ip;
+        }
+        return client;
+    }
+
+    // Context path -> limit, from DEFAULT_RATE_LIMITS followed by --rate-limits, e.g.
+    // --rate-limits=/api/login=10/m:5,/api/book=off. "*" is the limit for every other context and
+    // LOGIN_ACCOUNT_LIMIT the one per address and email on /api/login; a null value means unlimited,
+    // and --rate-limits=off turns limiting off altogether.
+    Map<String, RateLimiter.Limit> rateLimitsByPath() {
+        Map<String, RateLimiter.Limit> m = new LinkedHashMap<>();
+        if (rateLimits.equals("off")) return m;
+        for (String spec : (DEFAULT_RATE_LIMITS + (rateLimits.isEmpty() ? "" : "," + rateLimits)).split(",")) {
+            int eq = spec.indexOf('=');
+            if (eq <= 0) throw new IllegalArgumentException("--rate-limits entries look like /api/login=10/m:5, not " + spec);
+            String value = spec.substring(eq + 1).trim();
+            m.put(spec.substring(0, eq).trim(), value.equals("off") ? null : RateLimiter.Limit.parse(value));
+        }
+        return m;
+    }
+
+    @Override
+    public String toString() {
+        String exec = executor == ExecutorMode.POOL ? "pool(threads=" + threads + ", queue=" + queue + ")" : executor.name().toLowerCase();
+        return "port=" + port + ", db=" + dbPath + ", readers=" + readers + ", executor=" + exec;
+    }
+}
@@ -0,0 +1,3 @@
+package com.hostel;
+
+record Session(int userId, String role) {}
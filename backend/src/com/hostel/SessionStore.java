@@ -0,0 +1,197 @@
+package com.hostel;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Login sessions looked up by auth token. Sessions expire after an absolute TTL or after being idle,
+// and the oldest are evicted when the store is full. A background sweeper removes expired entries and,
+// when persistence is on, writes changes to the sessions table in one batch so logins never wait on
+// the database writer. Persisted sessions are reloaded at startup.
+// Sessions are keyed by the SHA-256 of the token, in memory and in the table, so the database never
+// holds a usable token; the client's copy is the only one.
+class SessionStore {
+    private static final long SWEEP_INTERVAL_MS = 5000;
+    // lastSeen is only refreshed this often, to keep reads from writing on every request.
+    private static final long TOUCH_GRANULARITY_MS = 30_000;
+
+    private final long ttlMillis;
+    private final long idleMillis;
+    private final int maxSessions;
+    private final boolean persistent;
+    private final ConcurrentHashMap<String, Entry> sessions = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<String> pendingDeletes = new ConcurrentLinkedQueue<>();
+    private final LongAdder expired = new LongAdder();
+    private final LongAdder evicted = new LongAdder();
+    private ScheduledExecutorService sweeper;
+
+    private static final class Entry {
+        final Session session;
+        final long createdAt;
+        volatile long lastSeen;
+        volatile boolean dirty;
+
+        Entry(Session session, long createdAt, long lastSeen, boolean dirty) {
+            this.session = session; this.createdAt = createdAt; this.lastSeen = lastSeen; this.dirty = dirty;
+        }
+    }
+
+    SessionStore(long ttlMillis, long idleMillis, int maxSessions, boolean persistent) {
+        this.ttlMillis = ttlMillis; this.idleMillis = idleMillis;
+        this.maxSessions = maxSessions; this.persistent = persistent;
+    }
+
+    void start() throws SQLException {
+        if (persistent) load();
+        sweeper = Executors.newSingleThreadScheduledExecutor(r -> { Thread t = new Thread(r, "session-sweeper"); t.setDaemon(true); return t; });
+        sweeper.scheduleWithFixedDelay(this::sweepQuietly, SWEEP_INTERVAL_MS, SWEEP_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    void stop() {
+        if (sweeper != null) sweeper.shutdown();
+        sweepQuietly();
+    }
+
+    String create(Session session) {
+        String token = UUID.randomUUID().toString();
+        long now = System.currentTimeMillis();
+        sessions.put(hash(token), new Entry(session, now, now, true));
+        if (sessions.size() > maxSessions) evictOldest();
+        return token;
+    }
+
+    Session get(String token) {
+        if (token == null) return null;
+        String key = hash(token);
+        Entry e = sessions.get(key);
+        if (e == null) return null;
+        long now = System.currentTimeMillis();
+        if (isExpired(e, now)) { if (sessions.remove(key, e)) { expired.increment(); pendingDeletes.add(key); } return null; }
+        if (now - e.lastSeen > TOUCH_GRANULARITY_MS) { e.lastSeen = now; e.dirty = true; }
+        return e.session;
+    }
+
+    void remove(String token) {
+        if (token == null) return;
+        String key = hash(token);
+        if (sessions.remove(key) != null) pendingDeletes.add(key);
+    }
+
+    // Hex SHA-256 of a token: the key sessions are stored under.
+    static String hash(String token) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    Map<String, Object> stats() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("active", sessions.size());
+        m.put("expired", expired.sum());
+        m.put("evicted", evicted.sum());
+        return m;
+    }
+
+    private boolean isExpired(Entry e, long now) {
+        return now - e.createdAt > ttlMillis || now - e.lastSeen > idleMillis;
+    }
+
+    // Drop the least recently used tenth of a percent (at least one) in one pass,
+    // so a full store does not sort on every login.
+    private synchronized void evictOldest() {
+        int excess = sessions.size() - maxSessions;
+        if (excess <= 0) return;
+        int n = Math.max(excess, maxSessions / 1000);
+        List<Map.Entry<String, Entry>> all = new ArrayList<>(sessions.entrySet());
+        all.sort(Comparator.comparingLong(me -> me.getValue().lastSeen));
+        for (int i = 0; i < n && i < all.size(); i++) {
+            Map.Entry<String, Entry> me = all.get(i);
+            if (sessions.remove(me.getKey(), me.getValue())) { evicted.increment(); pendingDeletes.add(me.getKey()); }
+        }
+    }
+
+    private void sweepQuietly() {
+        try { sweep(); }
+        catch (Exception e) { System.err.println("Session sweep failed: " + e.getMessage()); }
+    }
+
+    void sweep() throws SQLException {
+        long now = System.currentTimeMillis();
+        List<Map.Entry<String, Entry>> dirty = new ArrayList<>();
+        for (Map.Entry<String, Entry> me : sessions.entrySet()) {
+            Entry e = me.getValue();
+            if (isExpired(e, now)) {
+                if (sessions.remove(me.getKey(), e)) { expired.increment(); pendingDeletes.add(me.getKey()); }
+            } else if (e.dirty) {
+                dirty.add(me);
+            }
+        }
+        if (persistent) flush(dirty);
+        else pendingDeletes.clear();
+    }
+
+    // Deletes are taken off the queue up front and put back if the transaction fails, as are dirty flags.
+    private void flush(List<Map.Entry<String, Entry>> dirty) throws SQLException {
+        if (dirty.isEmpty() && pendingDeletes.isEmpty()) return;
+        List<String> deletes = new ArrayList<>();
+        for (String key; (key = pendingDeletes.poll()) != null; ) deletes.add(key);
+        boolean committed = false;
+        try (Connection c = Database.getConnection()) {
+            c.setAutoCommit(false);
+            try {
+                try (PreparedStatement ps = c.prepareStatement("INSERT OR REPLACE INTO sessions(token,user_id,role,created_at,last_seen) VALUES(?,?,?,?,?)")) {
+                    for (Map.Entry<String, Entry> me : dirty) {
+                        Entry e = me.getValue();
+                        e.dirty = false;
+                        ps.setString(1, me.getKey()); ps.setInt(2, e.session.userId()); ps.setString(3, e.session.role());
+                        ps.setLong(4, e.createdAt); ps.setLong(5, e.lastSeen);
+                        ps.addBatch();
+                    }
+                    ps.executeBatch();
+                }
+                try (PreparedStatement ps = c.prepareStatement("DELETE FROM sessions WHERE token=?")) {
+                    for (String key : deletes) { ps.setString(1, key); ps.addBatch(); }
+                    ps.executeBatch();
+                }
+                c.commit();
+                committed = true;
+            } catch (SQLException err) {
+                c.rollback();
+                for (Map.Entry<String, Entry> me : dirty) me.getValue().dirty = true;
+                throw err;
+            } finally { c.setAutoCommit(true); }
+        } finally {
+            if (!committed) pendingDeletes.addAll(deletes);
+        }
+    }
+
+    private void load() throws SQLException {
+        long now = System.currentTimeMillis();
+        try (Connection c = Database.getConnection()) {
+            try (PreparedStatement ps = c.prepareStatement("DELETE FROM sessions WHERE created_at < ? OR last_seen < ?")) {
+                ps.setLong(1, now - ttlMillis); ps.setLong(2, now - idleMillis); ps.executeUpdate();
+            }
+            try (PreparedStatement ps = c.prepareStatement("SELECT token,user_id,role,created_at,last_seen FROM sessions")) {
+                ResultSet rs = ps.executeQuery();
+                while (rs.next()) {
+                    Session s = new Session(rs.getInt("user_id"), rs.getString("role"));
+                    String key = rs.getString("token");
+                    // Rows written before tokens were hashed: stored again under the hash, the plain token deleted.
+                    boolean plain = key.length() != 64;
+                    if (plain) pendingDeletes.add(key);
+                    sessions.put(plain ? hash(key) : key, new Entry(s, rs.getLong("created_at"), rs.getLong("last_seen"), plain));
+                }
+            }
+        }
+    }
+}
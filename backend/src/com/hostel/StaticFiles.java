@@ -0,0 +1,122 @@
+package com.hostel;
+
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+
+// Serves the frontend/ directory on the API's own origin, so pages call /api without a CORS preflight.
+// Files are read into memory once at startup; compressible ones are also gzipped then and the copy
+// kept if it is smaller. Every file has a strong ETag (SHA-256 of its content) and is sent with
+// Cache-Control: no-cache, so a browser revalidates each time and normally gets a bodiless 304.
+// Edits to the frontend need a server restart.
+class StaticFiles {
+    private record Asset(String type, byte[] body, byte[] gzip, String etag) {}
+
+    private final Map<String, Asset> assets;
+    private final long bytes;
+    private final long gzipBytes;
+
+    private StaticFiles(Map<String, Asset> assets) {
+        this.assets = assets;
+        long b = 0, g = 0;
+        for (Asset a : assets.values()) { b += a.body.length; g += a.gzip == null ? a.body.length : a.gzip.length; }
+        this.bytes = b; this.gzipBytes = g;
+    }
+
+    static StaticFiles load(Path root) throws IOException {
+        Map<String, Asset> assets = new HashMap<>();
+        try (Stream<Path> files = Files.walk(root)) {
+            for (Path p : (Iterable<Path>) files.filter(Files::isRegularFile)::iterator) {
+                String path = "/" + root.relativize(p).toString().replace('\\', '/');
+                String type = contentType(path);
+                byte[] body = Files.readAllBytes(p);
+                byte[] gzip = compressible(type) ? ContentEncoding.gzipIfSmaller(body) : null;
+                assets.put(path, new Asset(type, body, gzip, etag(body)));
+            }
+        }
+        return new StaticFiles(assets);
+    }
+
+    void handle(HttpExchange ex) throws IOException {
+        String method = ex.getRequestMethod();
+        boolean head = "HEAD".equalsIgnoreCase(method);
+        if (!head && !"GET".equalsIgnoreCase(method)) {
+            ex.getResponseHeaders().set("Allow", "GET, HEAD");
+            ex.sendResponseHeaders(405, -1); ex.close(); return;
+        }
+        String path = ex.getRequestURI().getPath();
+        if (path.endsWith("/")) path += "index.html";
+        Asset a = assets.get(path);
+        if (a == null) {
+            byte[] msg = "Not found".getBytes(StandardCharsets.UTF_8);
+            ex.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+            ex.sendResponseHeaders(404, head ? -1 : msg.length);
+            try (OutputStream os = ex.getResponseBody()) { if (!head) os.write(msg); }
+            return;
+        }
+        boolean gzip = a.gzip != null && ContentEncoding.acceptsGzip(ex);
+        ex.getResponseHeaders().set("Content-Type", a.type);
+        ex.getResponseHeaders().set("ETag", gzip ? ContentEncoding.gzipEtag(a.etag) : a.etag);
+        ex.getResponseHeaders().set("Cache-Control", "no-cache");
+        if (a.gzip != null) ex.getResponseHeaders().set("Vary", "Accept-Encoding");
+        if (ContentEncoding.notModified(ex, a.etag)) { ex.sendResponseHeaders(304, -1); ex.close(); return; }
+        byte[] body = gzip ? a.gzip : a.body;
+        if (gzip) ex.getResponseHeaders().set("Content-Encoding", "gzip");
+        if (head) {
+            // -1 means "no body"; the length a GET would have sent is still announced.
+            ex.getResponseHeaders().set("Content-Length", Integer.toString(body.length));
+            ex.sendResponseHeaders(200, -1); ex.close(); return;
+        }
+        ex.sendResponseHeaders(200, body.length);
+        try (OutputStream os = ex.getResponseBody()) { os.write(body); }
+    }
+
+    Map<String, Object> stats() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("files", assets.size());
+        m.put("bytes", bytes);
+        m.put("gzipBytes", gzipBytes);
+        return m;
+    }
+
+    private static String contentType(String path) {
+        String ext = path.substring(path.lastIndexOf('.') + 1).toLowerCase();
+        switch (ext) {
+            case "html": return "text/html; charset=utf-8";
+            case "css": return "text/css; charset=utf-8";
+            case "js": return "text/javascript; charset=utf-8";
+            case "json": return "application/json; charset=utf-8";
+            case "svg": return "image/svg+xml";
+            case "png": return "image/png";
+            case "jpg": case "jpeg": return "image/jpeg";
+            case "ico": return "image/x-icon";
+            case "txt": return "text/plain; charset=utf-8";
+            default: return "application/octet-stream";
+        }
+    }
+
+    private static boolean compressible(String type) {
+        return type.startsWith("text/") || type.startsWith("application/json") || type.equals("image/svg+xml");
+    }
+
+    private static String etag(byte[] body) {
+        try {
+            byte[] d = MessageDigest.getInstance("SHA-256").digest(body);
+            StringBuilder sb = new StringBuilder(34).append('"');
+            for (int i = 0; i < 16; i++) sb.append(String.format("%02x", d[i]));
+            return sb.append('"').toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.hostel;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.sql.*;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Drives GET /api/admin/bookings against a cursor that fails part-way through the page.
+class AdminBookingsTest {
+    private static final int BOOKINGS = 400;
+
+    @TempDir Path dir;
+    HttpServer server;
+    final HttpClient client = HttpClient.newHttpClient();
+    String token;
+
+    @BeforeEach
+    void start() throws Exception {
+        ServerConfig config = ServerConfig.parse(new String[]{
+                "--db=" + dir.resolve("hostel.db"), "--event-log=none", "--static=none", "--persist-sessions=false",
+                "--hash-iterations=1000", "--rate-limits=off"});
+        config.port = 0;
+        server = Main.start(config);
+        HttpResponse<String> login = client.send(request("/api/login")
+                .POST(HttpRequest.BodyPublishers.ofString("{\"email\":\"admin@hostel.com\",\"password\":\"admin123\",\"role\":\"admin\"}")).build(),
+                HttpResponse.BodyHandlers.ofString());
+        token = (String) Json.parse(login.body()).get("token");
+
+        // One booking per student, the student ids in booking order.
+        try (Connection c = Database.getConnection(); Statement st = c.createStatement()) {
+            st.execute("WITH RECURSIVE n(i) AS (SELECT 1 UNION ALL SELECT i+1 FROM n WHERE i<" + BOOKINGS + ") "
+                    + "INSERT INTO students(name,email,password,role) SELECT 'Student ' || i, 's' || i || '@test', 'x', 'student' FROM n");
+            st.execute("INSERT INTO bookings(student_id,room_id,status,created_at) SELECT id, 1, 'cancelled', '2024-01-01 00:00:00' FROM students WHERE email LIKE 's%@test' ORDER BY id");
+        }
+    }
+
+    @AfterEach
+    void stop() {
+        Main.stop(server);
+    }
+
+    private HttpRequest.Builder request(String path) {
+        return HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + server.getAddress().getPort() + path));
+    }
+
+    // From now on reading the student of the given booking fails: abs() of the smallest integer overflows.
+    private static void failAtBooking(int bookingId) throws SQLException {
+        try (Connection c = Database.getConnection(); Statement st = c.createStatement()) {
+            st.execute("ALTER TABLE students RENAME TO students_data");
+            st.execute("CREATE VIEW students AS SELECT s.id, CASE WHEN s.id=(SELECT student_id FROM bookings WHERE id=" + bookingId + ") "
+                    + "THEN abs(-9223372036854775807-1) ELSE s.name END AS name, s.email, s.password, s.role FROM students_data s");
+        }
+    }
+
+    private HttpResponse<String> page() throws Exception {
+        return client.send(request("/api/admin/bookings?limit=500").header("X-Auth-Token", token).build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    @Test
+    void completePage() throws Exception {
+        HttpResponse<String> r = page();
+        assertEquals(200, r.statusCode());
+        assertEquals(BOOKINGS, ((List<?>) Json.parse(r.body()).get("bookings")).size());
+    }
+
+    @Test
+    void failureBeforeAnythingWasSentIsA500() throws Exception {
+        failAtBooking(BOOKINGS - 5);
+        HttpResponse<String> r = page();
+        assertEquals(500, r.statusCode());
+        assertEquals("DB error", Json.parse(r.body()).get("message"));
+    }
+
+    @Test
+    void failureAfterStreamingStartedCutsTheResponseOff() throws Exception {
+        failAtBooking(10);
+        assertThrows(IOException.class, this::page);
+    }
+}
@@ -0,0 +1,50 @@
+package com.hostel;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConnectionPoolTest {
+    @TempDir Path dir;
+
+    @Test
+    void cachesPreparedStatementsPerConnection() throws Exception {
+        ConnectionPool pool = new ConnectionPool("test", "jdbc:sqlite:" + dir.resolve("p.db"), new Properties(), List.of(), 1, 1000);
+        for (int i = 0; i < 3; i++) {
+            try (Connection c = pool.acquire(); PreparedStatement ps = c.prepareStatement("SELECT ?")) {
+                ps.setInt(1, i);
+                try (ResultSet rs = ps.executeQuery()) { rs.next(); assertEquals(i, rs.getInt(1)); }
+            }
+        }
+        assertEquals(1L, pool.stats().get("statementMisses"));
+        assertEquals(2L, pool.stats().get("statementHits"));
+        pool.close();
+    }
+
+    @Test
+    void brokenSlotIsReopenedOnTheNextAcquire() throws Exception {
+        List<String> pragmas = new ArrayList<>(List.of("PRAGMA busy_timeout=1000"));
+        ConnectionPool pool = new ConnectionPool("test", "jdbc:sqlite:" + dir.resolve("p.db"), new Properties(), pragmas, 1, 200);
+        pragmas.add("PRAGMA no_such_thing=(");
+        // Kill the physical connection so the reset on release fails; reopening fails too.
+        Connection c = pool.acquire();
+        c.unwrap(Connection.class).close();
+        c.close();
+        assertEquals(1L, pool.stats().get("reopenFailures"));
+        assertThrows(SQLException.class, pool::acquire);
+        assertEquals(0, pool.stats().get("inUse"));
+
+        pragmas.remove(1);
+        try (Connection again = pool.acquire(); Statement st = again.createStatement(); ResultSet rs = st.executeQuery("SELECT 1")) {
+            assertTrue(rs.next());
+        }
+        pool.close();
+    }
+}
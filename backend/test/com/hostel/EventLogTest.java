@@ -0,0 +1,167 @@
+package com.hostel;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.*;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EventLogTest {
+    @TempDir Path dir;
+    Path log, snapshot;
+
+    @BeforeEach
+    void open() throws Exception {
+        Database.init(dir.resolve("hostel.db").toString(), 2);
+        log = dir.resolve("events.log");
+        snapshot = dir.resolve("events.log.snapshot");
+        RoomCache.load(EventLog.open(log, snapshot, 1000));
+    }
+
+    @AfterEach
+    void close() {
+        EventLog.close();
+        Database.close();
+    }
+
+    private void reopen() throws Exception {
+        EventLog.close();
+        RoomCache.load(EventLog.open(log, snapshot, 1000));
+    }
+
+    private List<Integer> students(int n) throws SQLException {
+        List<Integer> ids = new ArrayList<>();
+        try (Connection c = Database.getConnection();
+             PreparedStatement ps = c.prepareStatement("INSERT INTO students(name,email,password,role) VALUES(?,?,'x','student') RETURNING id")) {
+            for (int i = 0; i < n; i++) {
+                ps.setString(1, "S" + i); ps.setString(2, "s" + i + "@test");
+                ResultSet rs = ps.executeQuery(); rs.next(); ids.add(rs.getInt(1));
+            }
+        }
+        return ids;
+    }
+
+    private static Map<Integer, Integer> tableAvailability() throws SQLException {
+        Map<Integer, Integer> m = new HashMap<>();
+        try (Connection c = Database.getReadConnection(); Statement st = c.createStatement(); ResultSet rs = st.executeQuery("SELECT id,available FROM rooms")) {
+            while (rs.next()) m.put(rs.getInt(1), rs.getInt(2));
+        }
+        return m;
+    }
+
+    private static Map<Integer, Integer> logAvailability() {
+        Map<Integer, Integer> m = new HashMap<>();
+        EventLog.rooms().forEach((id, r) -> m.put(id, r.available()));
+        return m;
+    }
+
+    private void bookSome() throws SQLException {
+        List<Integer> s = students(5);
+        int room = RoomCache.list().get(0).id();
+        for (int id : s) BookingService.book(id, room);
+        BookingService.cancel(s.get(0));
+    }
+
+    @Test
+    void newLogStartsFromTheRoomsTable() {
+        List<EventLog.Event> events = EventLog.events(null, 100);
+        assertEquals(EventLog.Type.RESET, events.get(0).type());
+        assertEquals(RoomCache.list().size(), events.size() - 1);
+    }
+
+    @Test
+    void replaysFromSnapshotAfterRestart() throws Exception {
+        bookSome();
+        reopen();
+        assertEquals(tableAvailability(), logAvailability());
+        assertEquals(0L, EventLog.stats().get("replayed"));
+        assertEquals(true, Consistency.check().get("ok"));
+    }
+
+    @Test
+    void roomsCreatedWithSeatsHeldBackAreConsistent() throws Exception {
+        BulkService.importRooms(List.of(new BulkService.RoomRow(1, "H1", 4, 1)));
+        int room = RoomCache.list().stream().filter(r -> r.roomNumber().equals("H1")).findFirst().orElseThrow().id();
+        assertEquals(BookingService.Status.BOOKED, BookingService.book(students(1).get(0), room).status());
+        assertEquals(true, Consistency.check().get("ok"));
+    }
+
+    @Test
+    void replaysEveryEventWithoutSnapshot() throws Exception {
+        bookSome();
+        long seq = (Long) EventLog.stats().get("seq");
+        EventLog.close();
+        Files.delete(snapshot);
+        RoomCache.load(EventLog.open(log, snapshot, 1000));
+        assertEquals(seq, EventLog.stats().get("replayed"));
+        assertEquals(tableAvailability(), logAvailability());
+    }
+
+    @Test
+    void cutsOffEventsTheDatabaseNeverCommitted() throws Exception {
+        bookSome();
+        long seq = (Long) EventLog.stats().get("seq");
+        // As if the process died after the log was written but before the database commit.
+        try (Connection c = Database.getConnection(); Statement st = c.createStatement()) {
+            st.executeUpdate("UPDATE event_log_state SET seq=" + (seq - 1));
+        }
+        reopen();
+        assertEquals(seq - 1, EventLog.stats().get("seq"));
+        List<EventLog.Event> events = EventLog.events(null, 1);
+        assertEquals(seq - 1, events.get(0).seq());
+    }
+
+    @Test
+    void rollbackTakesEventsBackOut() throws Exception {
+        long seq = (Long) EventLog.stats().get("seq");
+        int student = students(1).get(0), room = RoomCache.list().get(0).id();
+        assertThrows(SQLException.class, () -> BookingService.inTransaction(c -> {
+            BookingService.book(c, student, room);
+            throw new SQLException("fail after booking");
+        }));
+        assertEquals(seq, EventLog.stats().get("seq"));
+        reopen();
+        assertEquals(tableAvailability(), logAvailability());
+    }
+
+    @Test
+    void newestEventsAreFoundWithoutReadingTheWholeLog() throws Exception {
+        List<Integer> s = students(2);
+        int first = RoomCache.list().get(0).id(), second = RoomCache.list().get(1).id();
+        // Well over two marks' worth of events, the first room's last one early on.
+        BookingService.inTransaction(c -> {
+            BookingService.book(c, s.get(0), first);
+            for (int i = 0; i < 1500; i++) { BookingService.book(c, s.get(1), second); BookingService.cancel(c, s.get(1)); }
+            return null;
+        });
+        long seq = (Long) EventLog.stats().get("seq");
+        for (int round = 0; round < 2; round++) {
+            List<EventLog.Event> newest = EventLog.events(null, 10);
+            assertEquals(10, newest.size());
+            for (int i = 0; i < 10; i++) assertEquals(seq - 9 + i, newest.get(i).seq());
+            assertEquals(seq, EventLog.events(null, Integer.MAX_VALUE).size());
+
+            List<EventLog.Event> forRoom = EventLog.events(first, 2);
+            assertEquals(List.of(EventLog.Type.ROOM, EventLog.Type.BOOKED), forRoom.stream().map(EventLog.Event::type).toList());
+            assertEquals(EventLog.Type.RESET, EventLog.events(first, 3).get(0).type());
+            reopen();
+        }
+    }
+
+    @Test
+    void rebasesWhenTheLogIsLost() throws Exception {
+        bookSome();
+        EventLog.close();
+        Files.delete(log);
+        Files.delete(snapshot);
+        RoomCache.load(EventLog.open(log, snapshot, 1000));
+        assertEquals(EventLog.Type.RESET, EventLog.events(null, 1000).get(0).type());
+        assertEquals(tableAvailability(), logAvailability());
+    }
+}
@@ -0,0 +1,82 @@
+package com.hostel;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JsonTest {
+    @Test
+    void parsesObjectsArraysAndScalars() {
+        Map<String, Object> m = Json.parse("{\"a\":1,\"b\":-2.5,\"c\":\"x\",\"d\":[true,false,null],\"e\":{}}");
+        assertEquals(1L, m.get("a"));
+        assertEquals(-2.5, m.get("b"));
+        assertEquals("x", m.get("c"));
+        assertEquals(Arrays.asList(true, false, null), m.get("d"));
+        assertEquals(Collections.emptyMap(), m.get("e"));
+    }
+
+    @Test
+    void longIntegersBecomeDoubles() {
+        assertEquals(123456789012345678L, Json.parse("{\"n\":123456789012345678}").get("n"));
+        assertEquals(1.2345678901234568E19, Json.parse("{\"n\":12345678901234567890}").get("n"));
+    }
+
+    @Test
+    void decodesEscapesAndUtf8() {
+        Map<String, Object> m = Json.parse("{\"s\":\"a\\\"b\\\\c\\n\\u00e9 M\u00fcller\"}");
+        assertEquals("a\"b\\c\n\u00e9 M\u00fcller", m.get("s"));
+    }
+
+    @Test
+    void roundTripsThroughTheWriter() {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("name", "Student \"1\"\t\u00fc\u2028");
+        m.put("n", 42);
+        m.put("list", Arrays.asList(1, "two", null, false));
+        m.put("nested", Collections.singletonMap("k", -7L));
+        Map<String, Object> back = Json.parse(Json.toBytes(m));
+        assertEquals(m.get("name"), back.get("name"));
+        assertEquals(42L, back.get("n"));
+        assertEquals(Arrays.asList(1L, "two", null, false), back.get("list"));
+        assertEquals(Collections.singletonMap("k", -7L), back.get("nested"));
+    }
+
+    @Test
+    void rejectsMalformedInput() {
+        for (String bad : new String[]{"", "[]", "{", "{\"a\"}", "{\"a\":1,}", "{\"a\":1} x", "{\"a\":\"open}", "{\"a\":tru}", "{\"a\":\"\\u12\"}"}) {
+            assertThrows(Json.JsonException.class, () -> Json.parse(bad), bad);
+        }
+    }
+
+    @Test
+    void followsTheNumberGrammar() {
+        assertEquals(0L, Json.parseValue("-0".getBytes(StandardCharsets.UTF_8)));
+        assertEquals(0.5, Json.parseValue("0.5".getBytes(StandardCharsets.UTF_8)));
+        assertEquals(-1.5e-3, Json.parseValue("-15E-4".getBytes(StandardCharsets.UTF_8)));
+        assertEquals(200.0, Json.parseValue("2e+2".getBytes(StandardCharsets.UTF_8)));
+        for (String bad : new String[]{"1.2.3", "e", "-", "1e", "1.", ".5", "-.5", "01", "1e+", "+1", "1-2", "--1", "1ee2"}) {
+            assertThrows(Json.JsonException.class, () -> Json.parse("{\"a\":" + bad + "}"), bad);
+        }
+    }
+
+    @Test
+    void limitsNestingAndSize() {
+        String deep = "[".repeat(100) + "]".repeat(100);
+        assertThrows(Json.JsonException.class, () -> Json.parseValue(deep.getBytes(StandardCharsets.UTF_8)));
+        byte[] big = new byte[Json.MAX_INPUT_BYTES + 1];
+        assertThrows(Json.JsonException.class, () -> Json.parseValue(big));
+        String list = "[" + "0,".repeat(Json.MAX_INPUT_BYTES / 2) + "0]";
+        assertEquals(Json.MAX_INPUT_BYTES / 2 + 1, ((List<?>) Json.parseValue(list.getBytes(StandardCharsets.UTF_8), 4 * Json.MAX_INPUT_BYTES)).size());
+    }
+
+    @Test
+    void readBoundedStopsAtTheLimit() throws Exception {
+        byte[] body = new byte[10_000];
+        assertEquals(10_000, Json.readBounded(new ByteArrayInputStream(body), 10_000).length);
+        assertThrows(Json.JsonException.class, () -> Json.readBounded(new ByteArrayInputStream(body), 9_999));
+    }
+}
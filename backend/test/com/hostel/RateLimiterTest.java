@@ -0,0 +1,60 @@
+package com.hostel;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RateLimiterTest {
+    @Test
+    void parsesLimits() {
+        assertEquals(new RateLimiter.Limit(5, TimeUnit.SECONDS.toNanos(1), 20), RateLimiter.Limit.parse("5/s:20"));
+        assertEquals(new RateLimiter.Limit(30, TimeUnit.MINUTES.toNanos(1), 30), RateLimiter.Limit.parse("30/m"));
+        assertEquals("2/h:4", RateLimiter.Limit.parse(" 2 / h : 4 ").toString());
+        for (String bad : new String[]{"", "5", "5/d", "0/s", "5/s:0", "x/s", "5/s:"}) {
+            assertThrows(IllegalArgumentException.class, () -> RateLimiter.Limit.parse(bad), bad);
+        }
+    }
+
+    @Test
+    void allowsTheBurstThenLimits() {
+        RateLimiter l = new RateLimiter(RateLimiter.Limit.parse("1/h:3"));
+        for (int i = 0; i < 3; i++) assertEquals(0, l.acquire("a"));
+        long wait = l.acquire("a");
+        assertTrue(wait > TimeUnit.MINUTES.toNanos(59) && wait <= TimeUnit.HOURS.toNanos(1), "wait " + wait);
+        assertEquals(0, l.acquire("b"), "keys have separate budgets");
+        assertEquals(4L, l.stats().get("allowed"));
+        assertEquals(1L, l.stats().get("limited"));
+    }
+
+    @Test
+    void refillsAtTheRate() throws Exception {
+        RateLimiter l = new RateLimiter(RateLimiter.Limit.parse("20/s:1"));
+        assertEquals(0, l.acquire("a"));
+        long wait = l.acquire("a");
+        assertTrue(wait > 0 && wait <= TimeUnit.MILLISECONDS.toNanos(50), "wait " + wait);
+        Thread.sleep(TimeUnit.NANOSECONDS.toMillis(wait) + 5);
+        assertEquals(0, l.acquire("a"));
+    }
+
+    @Test
+    void concurrentCallersNeverExceedTheBurst() throws Exception {
+        RateLimiter l = new RateLimiter(RateLimiter.Limit.parse("1/h:100"));
+        AtomicInteger allowed = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        for (int t = 0; t < 8; t++) {
+            pool.submit(() -> {
+                start.await();
+                for (int i = 0; i < 5_000; i++) if (l.acquire("hot") == 0) allowed.incrementAndGet();
+                return null;
+            });
+        }
+        start.countDown();
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(30, TimeUnit.SECONDS));
+        assertEquals(100, allowed.get());
+    }
+}
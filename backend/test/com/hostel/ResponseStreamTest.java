@@ -0,0 +1,74 @@
+package com.hostel;
+
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResponseStreamTest {
+    HttpServer server;
+    final HttpClient client = HttpClient.newHttpClient();
+
+    @BeforeEach
+    void start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.start();
+    }
+
+    @AfterEach
+    void stop() {
+        server.stop(0);
+    }
+
+    private HttpResponse<String> get(HttpHandler handler) throws Exception {
+        server.createContext("/t", handler);
+        URI uri = URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/t");
+        return client.send(HttpRequest.newBuilder(uri).build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    @Test
+    void bufferedBodyGoesOutWithALength() throws Exception {
+        HttpResponse<String> r = get(ex -> { try (ResponseStream out = new ResponseStream(ex, 201)) { out.write("hello".getBytes(StandardCharsets.UTF_8)); } });
+        assertEquals(201, r.statusCode());
+        assertEquals("hello", r.body());
+        assertEquals("5", r.headers().firstValue("Content-Length").orElse(null));
+    }
+
+    @Test
+    void abortBeforeAnythingIsSentLeavesRoomForAnError() throws Exception {
+        HttpResponse<String> r = get(ex -> {
+            ResponseStream out = new ResponseStream(ex, 200);
+            out.write("{\"partial\":".getBytes(StandardCharsets.UTF_8));
+            assertTrue(out.abort());
+            out.write('x');
+            out.close();
+            try (ResponseStream err = new ResponseStream(ex, 500)) { err.write("failed".getBytes(StandardCharsets.UTF_8)); }
+        });
+        assertEquals(500, r.statusCode());
+        assertEquals("failed", r.body());
+    }
+
+    @Test
+    void abortAfterStreamingStartedCutsTheBodyOff() throws Exception {
+        IOException e = assertThrows(IOException.class, () -> get(ex -> {
+            ResponseStream out = new ResponseStream(ex, 200, 16);
+            out.write(new byte[1000]);
+            out.flush();
+            assertFalse(out.abort());
+            out.close();
+            throw new IOException("cut off");
+        }));
+        assertNotNull(e.getMessage());
+    }
+}
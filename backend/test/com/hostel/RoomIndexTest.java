@@ -0,0 +1,95 @@
+package com.hostel;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RoomIndexTest {
+    @TempDir Path dir;
+
+    @BeforeEach
+    void open() throws Exception {
+        Database.init(dir.resolve("hostel.db").toString(), 2);
+        RoomCache.load();
+        RoomIndex.build();
+    }
+
+    @AfterEach
+    void close() {
+        Database.close();
+    }
+
+    private static List<Integer> students(int n) throws SQLException {
+        List<Integer> ids = new ArrayList<>();
+        try (Connection c = Database.getConnection();
+             PreparedStatement ps = c.prepareStatement("INSERT INTO students(name,email,password,role) VALUES(?,?,'x','student') RETURNING id")) {
+            for (int i = 0; i < n; i++) {
+                ps.setString(1, "S" + i); ps.setString(2, "s" + i + "@test");
+                ResultSet rs = ps.executeQuery(); rs.next(); ids.add(rs.getInt(1));
+            }
+        }
+        return ids;
+    }
+
+    @Test
+    void blockFloorAndCapacityFilters() {
+        assertEquals(List.of("A101", "A102"), RoomIndex.search(new RoomIndex.Filter("a", 1, null, null), false, 10).stream().map(RoomCache.Room::roomNumber).toList());
+        assertEquals(List.of("B202"), RoomIndex.search(new RoomIndex.Filter(null, null, 4, null), false, 10).stream().map(RoomCache.Room::roomNumber).toList());
+        assertEquals(0, RoomIndex.count(new RoomIndex.Filter("Z", null, null, null), true));
+    }
+
+    @Test
+    void indexKeepsTheLatestCountWhenListenerCallsArriveOutOfOrder() throws Exception {
+        int room = RoomIndex.search(new RoomIndex.Filter("A", 1, null, null), false, 1).get(0).id();
+        // Holds the first change's listener calls until a second change has gone through all of them; the index
+        // listener registered after the gate then hears of the first change last.
+        CountDownLatch secondDone = new CountDownLatch(1);
+        Thread first = new Thread(() -> RoomCache.adjust(room, -1));
+        RoomCache.addListener(id -> {
+            if (Thread.currentThread() != first) return;
+            try { secondDone.await(10, TimeUnit.SECONDS); } catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+        });
+        RoomIndex.build();
+        first.start();
+        while (RoomCache.get(room).available() == 2) Thread.onSpinWait();
+        RoomCache.adjust(room, -1);
+        secondDone.countDown();
+        first.join();
+
+        RoomCache.Room cached = RoomCache.get(room);
+        assertEquals(0, cached.available());
+        assertEquals(cached, RoomIndex.search(new RoomIndex.Filter("A", 1, null, null), true, 10).stream().filter(r -> r.id() == room).findFirst().orElseThrow());
+    }
+
+    @Test
+    void preferenceTicketsInOneBatchSpreadOverTheBlock() throws Exception {
+        // 100 rooms in block C: 20 singles and 80 doubles, 180 seats.
+        List<BulkService.RoomRow> rows = new ArrayList<>();
+        for (int i = 0; i < 100; i++) rows.add(new BulkService.RoomRow(i + 1, "C" + (101 + i), i < 20 ? 1 : 2, null));
+        BulkService.importRooms(rows);
+
+        BookingQueue queue = new BookingQueue(100, 64);
+        List<RoomIndex.Filter> prefs = List.of(new RoomIndex.Filter("C", null, null, null));
+        List<BookingQueue.Ticket> tickets = new ArrayList<>();
+        // Queued before the writer starts, so all 64 are applied in one transaction.
+        for (int id : students(64)) tickets.add(queue.submit(id, prefs));
+        queue.start();
+        Map<BookingService.Status, Integer> outcomes = new EnumMap<>(BookingService.Status.class);
+        for (BookingQueue.Ticket t : tickets) outcomes.merge(t.result.get(10, TimeUnit.SECONDS).status(), 1, Integer::sum);
+        queue.stop();
+
+        assertEquals(Map.of(BookingService.Status.BOOKED, 64), outcomes);
+        assertEquals(64L, queue.stats().get("largestBatch"));
+        assertEquals(180 - 64, RoomIndex.search(new RoomIndex.Filter("C", null, null, null), false, 100).stream().mapToInt(RoomCache.Room::available).sum());
+        assertEquals(true, Consistency.check().get("ok"));
+    }
+}
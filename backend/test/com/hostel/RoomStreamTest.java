@@ -0,0 +1,54 @@
+package com.hostel;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RoomStreamTest {
+    private static final int MAX = 4;
+
+    HttpServer server;
+    ExecutorService handlers = Executors.newFixedThreadPool(32);
+    RoomStream stream = new RoomStream(MAX, 2);
+    final HttpClient client = HttpClient.newHttpClient();
+
+    @BeforeEach
+    void start() throws Exception {
+        RoomCache.load(List.of());
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/stream", stream::subscribe);
+        server.setExecutor(handlers);
+        server.start();
+    }
+
+    @AfterEach
+    void stop() {
+        stream.stop();
+        server.stop(0);
+        handlers.shutdownNow();
+    }
+
+    @Test
+    void concurrentConnectsStayWithinTheCap() throws Exception {
+        HttpRequest req = HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/stream")).build();
+        List<CompletableFuture<HttpResponse<InputStream>>> connects = new ArrayList<>();
+        for (int i = 0; i < 32; i++) connects.add(client.sendAsync(req, HttpResponse.BodyHandlers.ofInputStream()));
+        Map<Integer, Integer> codes = new TreeMap<>();
+        for (CompletableFuture<HttpResponse<InputStream>> f : connects) codes.merge(f.get(10, TimeUnit.SECONDS).statusCode(), 1, Integer::sum);
+
+        assertEquals(Map.of(200, MAX, 503, 32 - MAX), codes);
+        assertEquals(MAX, stream.stats().get("subscribers"));
+    }
+}
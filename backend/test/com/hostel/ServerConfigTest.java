@@ -0,0 +1,42 @@
+package com.hostel;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ServerConfigTest {
+    @Test
+    void rateLimitsMergeOverTheDefaults() {
+        ServerConfig c = ServerConfig.parse(new String[]{"--rate-limits=/api/login=5/m,/api/book=off,/api/rooms=1/s"});
+        Map<String, RateLimiter.Limit> m = c.rateLimitsByPath();
+        assertEquals("5/m:5", m.get("/api/login").toString());
+        assertTrue(m.containsKey("/api/book"));
+        assertNull(m.get("/api/book"));
+        assertEquals("1/s:1", m.get("/api/rooms").toString());
+        assertNotNull(m.get("*"));
+        assertNotNull(m.get(ServerConfig.LOGIN_ACCOUNT_LIMIT));
+        // Fetched without a token, so not held to the per-address "*" limit by default.
+        Map<String, RateLimiter.Limit> defaults = ServerConfig.parse(new String[0]).rateLimitsByPath();
+        for (String path : List.of("/", "/api/rooms", "/api/rooms/stream")) { assertTrue(defaults.containsKey(path)); assertNull(defaults.get(path)); }
+        assertTrue(ServerConfig.parse(new String[]{"--rate-limits=off"}).rateLimitsByPath().isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> ServerConfig.parse(new String[]{"--rate-limits=/api/login"}));
+    }
+
+    @Test
+    void forwardedForIsOnlyBelievedFromTrustedProxies() {
+        ServerConfig none = ServerConfig.parse(new String[0]);
+        assertEquals("203.0.113.9", none.clientAddress("203.0.113.9", List.of("198.51.100.1")));
+
+        ServerConfig c = ServerConfig.parse(new String[]{"--trusted-proxies=127.0.0.1, 10.0.0.2,::1"});
+        assertEquals("198.51.100.7", c.clientAddress("127.0.0.1", List.of("1.2.3.4, 198.51.100.7", "10.0.0.2")));
+        assertEquals("198.51.100.7", c.clientAddress("0:0:0:0:0:0:0:1", List.of("198.51.100.7")));
+        assertEquals("127.0.0.1", c.clientAddress("127.0.0.1", null));
+        assertEquals("10.0.0.2", c.clientAddress("127.0.0.1", List.of("10.0.0.2")));
+        assertEquals("unknown", c.clientAddress("127.0.0.1", List.of("unknown")));
+        assertEquals("192.0.2.5", c.clientAddress("192.0.2.5", List.of("1.2.3.4")));
+        assertThrows(IllegalArgumentException.class, () -> ServerConfig.parse(new String[]{"--trusted-proxies=proxy.example.com"}));
+    }
+}
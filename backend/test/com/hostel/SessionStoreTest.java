@@ -0,0 +1,90 @@
+package com.hostel;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.*;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SessionStoreTest {
+    private static final long HOUR = 3_600_000;
+
+    @TempDir Path dir;
+
+    @BeforeEach
+    void open() throws Exception {
+        Database.init(dir.resolve("hostel.db").toString(), 2);
+    }
+
+    @AfterEach
+    void close() {
+        Database.close();
+    }
+
+    private static SessionStore store() throws SQLException {
+        SessionStore s = new SessionStore(HOUR, HOUR, 1000, true);
+        s.start();
+        return s;
+    }
+
+    private static List<String> storedTokens() throws SQLException {
+        List<String> tokens = new ArrayList<>();
+        try (Connection c = Database.getConnection(); Statement st = c.createStatement();
+             ResultSet rs = st.executeQuery("SELECT token FROM sessions")) {
+            while (rs.next()) tokens.add(rs.getString(1));
+        }
+        return tokens;
+    }
+
+    private static void exec(String sql) throws SQLException {
+        try (Connection c = Database.getConnection(); Statement st = c.createStatement()) { st.execute(sql); }
+    }
+
+    @Test
+    void sessionsSurviveRestartWithoutStoringTheToken() throws Exception {
+        SessionStore first = store();
+        String token = first.create(new Session(7, "student"));
+        first.stop();
+
+        assertEquals(List.of(SessionStore.hash(token)), storedTokens());
+        SessionStore second = store();
+        assertEquals(new Session(7, "student"), second.get(token));
+        assertNull(second.get(SessionStore.hash(token)));
+        second.stop();
+    }
+
+    @Test
+    void plainTokensFromOlderVersionsAreRehashed() throws Exception {
+        String token = UUID.randomUUID().toString();
+        long now = System.currentTimeMillis();
+        exec("INSERT INTO sessions(token,user_id,role,created_at,last_seen) VALUES('" + token + "',3,'admin'," + now + "," + now + ")");
+
+        SessionStore s = store();
+        assertEquals(new Session(3, "admin"), s.get(token));
+        s.sweep();
+        assertEquals(List.of(SessionStore.hash(token)), storedTokens());
+        s.stop();
+    }
+
+    @Test
+    void logoutIsWrittenAfterAFailedFlush() throws Exception {
+        SessionStore s = store();
+        String token = s.create(new Session(5, "student"));
+        s.sweep();
+        s.remove(token);
+
+        exec("CREATE TRIGGER keep_sessions BEFORE DELETE ON sessions BEGIN SELECT RAISE(ABORT, 'no deletes'); END");
+        assertThrows(SQLException.class, s::sweep);
+        assertEquals(1, storedTokens().size());
+
+        exec("DROP TRIGGER keep_sessions");
+        s.sweep();
+        assertEquals(List.of(), storedTokens());
+        s.stop();
+    }
+}
@@ -1,5 +1,6 @@
 (() => {
-  const API_BASE = 'http://localhost:8080/api';
+  // Same origin when the backend serves the pages; opened as local files they still reach it on port 8080.
+  const API_BASE = location.protocol.startsWith('http') ? `${location.origin}/api` : 'http://localhost:8080/api';
 
   function getSession() {
     try { return JSON.parse(localStorage.getItem('session') || 'null'); } catch { return null; }
@@ -11,14 +12,49 @@
 
   async function request(path, options = {}) {
     const session = getSession();
-    const headers = Object.assign({ 'Content-Type': 'application/json' }, options.headers || {});
+    // Content-Type only with a body: on a GET it would turn a cross-origin request into a preflighted one.
+    const headers = Object.assign(options.body ? { 'Content-Type': 'application/json' } : {}, options.headers || {});
     if (session?.token) headers['X-Auth-Token'] = session.token;
     const res = await fetch(`${API_BASE}${path}`, Object.assign({}, options, { headers }));
     const data = await res.json().catch(() => ({}));
-    if (!res.ok) throw new Error(data.message || 'Request failed');
+    if (!res.ok) {
+      const err = new Error(data.message || 'Request failed');
+      err.status = res.status;
+      err.retryAfter = parseInt(res.headers.get('Retry-After'), 10) || 0;
+      throw err;
+    }
     return data;
   }
 
+  function newIdempotencyKey() {
+    if (window.crypto?.randomUUID) return crypto.randomUUID();
+    return `${Date.now().toString(36)}-${Math.random().toString(36).slice(2)}`;
+  }
+
+  // When the booking queue is long the server answers { queued, position } instead of the result;
+  // keep polling until it is decided, reporting the position through onQueued(position).
+  // Every attempt of one booking carries the same Idempotency-Key, so a retry after a rate limit (429),
+  // a busy server (503) or a lost response can never book twice; it gets the first attempt's answer.
+  async function submitBooking(body, onQueued) {
+    const options = { method: 'POST', body: JSON.stringify(body), headers: { 'Idempotency-Key': newIdempotencyKey() } };
+    let res;
+    for (let attempt = 1; ; attempt++) {
+      try {
+        res = await request('/book', options);
+        break;
+      } catch (err) {
+        if ((err.status !== 429 && err.status !== 503) || attempt >= 3) throw err;
+        await new Promise(r => setTimeout(r, Math.min(err.retryAfter || 1, 10) * 1000));
+      }
+    }
+    while (res.queued) {
+      if (onQueued) onQueued(res.position);
+      await new Promise(r => setTimeout(r, 1000));
+      res = await request('/book');
+    }
+    return res;
+  }
+
   const HostelAPI = {
     getUser() { return getSession()?.user || null; },
     ensureStudent() {
@@ -40,12 +76,35 @@
     async logout() { try { await request('/logout', { method: 'POST' }); } finally { clearSession(); } },
 
     async listRooms() { return await request('/rooms'); },
-    async bookRoom(roomId) { return await request('/book', { method: 'POST', body: JSON.stringify({ roomId }) }); },
+    // Rooms with a free seat matching { block, floor, capacity, minCapacity, maxCapacity } (all optional).
+    async searchRooms(filter = {}) {
+      const q = new URLSearchParams(Object.entries(filter).filter(([, v]) => v !== undefined && v !== null && v !== ''));
+      return await request(`/rooms/search${q.toString() ? '?' + q : ''}`);
+    },
+    // Live availability: onSnapshot(rooms) on (re)connect, onChange(rooms) with only the rooms that changed.
+    watchRooms(onSnapshot, onChange) {
+      const es = new EventSource(`${API_BASE}/rooms/stream`);
+      es.addEventListener('snapshot', e => onSnapshot(JSON.parse(e.data).rooms));
+      es.addEventListener('rooms', e => onChange(JSON.parse(e.data)));
+      return () => es.close();
+    },
+    async bookRoom(roomId, onQueued) {
+      return await submitBooking({ roomId }, onQueued);
+    },
+    // preferences: ranked filters like [{ block: 'A', floor: 1 }, { block: 'A' }, {}]; the server books
+    // the best free room for the first one it can satisfy and reports which (res.preference, 1-based).
+    async bookByPreferences(preferences, onQueued) {
+      return await submitBooking({ preferences }, onQueued);
+    },
     async getMyBooking() { return await request('/myBooking'); },
     async cancelMyBooking() { return await request('/myBooking', { method: 'DELETE' }); },
 
     async adminAddRoom(room) { return await request('/admin/rooms', { method: 'POST', body: JSON.stringify(room) }); },
-    async adminListBookings() { return await request('/admin/bookings'); }
+    // params: { after_id, limit, status, room, from, to }; the response carries nextAfterId for the next page.
+    async adminListBookings(params = {}) {
+      const q = new URLSearchParams(Object.entries(params).filter(([, v]) => v !== undefined && v !== null && v !== ''));
+      return await request(`/admin/bookings${q.toString() ? '?' + q : ''}`);
+    }
   };
 
   window.HostelAPI = HostelAPI;